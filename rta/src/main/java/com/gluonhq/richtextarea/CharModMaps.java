@@ -20,6 +20,19 @@ public class CharModMaps {
     private final Map<String, String> slashScriptSansMap = initializeSlashScriptSansMap();
     private final Map<String, String> slashGreekFrakMap = initializeSlashGreekFrakMap();
 
+    private static final class Holder {
+        private static final CharModMaps SHARED = new CharModMaps();
+    }
+
+    /**
+     * Gets the character modification maps shared by all the editors, built
+     * when first used. The maps are immutable.
+     * @return the shared CharModMaps
+     */
+    public static CharModMaps getShared() {
+        return Holder.SHARED;
+    }
+
 
 
 
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.emoji.Emoji;
+import com.gluonhq.emoji.EmojiData;
+import com.gluonhq.emoji.EmojiSkinTone;
+import com.gluonhq.emoji.util.EmojiImageUtils;
+import com.gluonhq.emoji.util.TextUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.Node;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of the images of the emojis, shared by all the controls of the application,
+ * keyed by emoji, skin tone and size. The emoji library is used once per key to find
+ * the image and its viewport, and then every emoji node is just a new image view of
+ * those cached pixels. Emojis without image get the fallback node of the library.
+ * The least recently used entries are evicted when there are more than a given
+ * number of entries.
+ */
+final class EmojiImageCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 512;
+
+    private static final EmojiImageCache SHARED = new EmojiImageCache(DEFAULT_MAX_ENTRIES);
+
+    private final Map<Key, EmojiImage> emojiImageMap;
+    private long hitCount;
+    private long missCount;
+
+    EmojiImageCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries " + maxEntries + " should be positive");
+        }
+        emojiImageMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, EmojiImage> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by all the controls
+     * @return the shared cache
+     */
+    static EmojiImageCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Creates a node for the given emoji
+     * @param emoji the emoji
+     * @param tone the skin tone, or null to use the default one
+     * @param size the size of the emoji, in pixels
+     * @return a new node with the image of the emoji
+     */
+    Node createEmojiNode(Emoji emoji, EmojiSkinTone tone, double size) {
+        EmojiImage emojiImage = getEmojiImage(emoji, tone, size);
+        if (emojiImage.isFallback()) {
+            // the emoji library has no image for it, and builds its own fallback node
+            return TextUtils.convertUnifiedToImageNode(emojiImage.unified, size);
+        }
+        ImageView imageView = new EmojiImageView(emojiImage.baselineFactor);
+        imageView.setSmooth(true);
+        imageView.setPreserveRatio(true);
+        imageView.getProperties().put(EmojiImageUtils.IMAGE_VIEW_EMOJI_PROPERTY, emojiImage.unified);
+        imageView.setImage(emojiImage.image);
+        imageView.setViewport(emojiImage.viewport);
+        imageView.setFitHeight(emojiImage.fitHeight);
+        return imageView;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized void clear() {
+        emojiImageMap.clear();
+    }
+
+    private synchronized EmojiImage getEmojiImage(Emoji emoji, EmojiSkinTone tone, double size) {
+        Key key = new Key(emoji.getUnified(), tone, size);
+        EmojiImage cachedImage = emojiImageMap.get(key);
+        if (cachedImage != null) {
+            hitCount++;
+            return cachedImage;
+        }
+        missCount++;
+        String unified = tone != null ? EmojiData.emojiWithTone(emoji, tone).getUnified() : emoji.getUnified();
+        Node node = TextUtils.convertUnifiedToImageNode(unified, size);
+        EmojiImage emojiImage;
+        if (node instanceof ImageView && ((ImageView) node).getImage() != null) {
+            ImageView imageView = (ImageView) node;
+            double height = imageView.getLayoutBounds().getHeight();
+            emojiImage = new EmojiImage(unified, imageView.getImage(), imageView.getViewport(), imageView.getFitHeight(),
+                    height > 0 ? imageView.getBaselineOffset() / height : 1d);
+        } else {
+            // emojis without image are cached as a fallback marker, to avoid looking them up again
+            emojiImage = new EmojiImage(unified, null, null, 0, 1d);
+        }
+        emojiImageMap.put(key, emojiImage);
+        return emojiImage;
+    }
+
+    private static final class EmojiImage {
+
+        private final String unified;
+        private final Image image;
+        private final Rectangle2D viewport;
+        private final double fitHeight;
+        private final double baselineFactor;
+
+        EmojiImage(String unified, Image image, Rectangle2D viewport, double fitHeight, double baselineFactor) {
+            this.unified = unified;
+            this.image = image;
+            this.viewport = viewport;
+            this.fitHeight = fitHeight;
+            this.baselineFactor = baselineFactor;
+        }
+
+        boolean isFallback() {
+            return image == null;
+        }
+    }
+
+    /**
+     * Image view with the baseline offset of the emoji nodes of the emoji library
+     */
+    private static final class EmojiImageView extends ImageView {
+
+        private final double baselineFactor;
+
+        EmojiImageView(double baselineFactor) {
+            this.baselineFactor = baselineFactor;
+        }
+
+        @Override
+        public double getBaselineOffset() {
+            return super.getBaselineOffset() * baselineFactor;
+        }
+    }
+
+    private static final class Key {
+
+        private final String unified;
+        private final EmojiSkinTone tone;
+        private final double size;
+
+        Key(String unified, EmojiSkinTone tone, double size) {
+            this.unified = unified;
+            this.tone = tone;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Double.compare(key.size, size) == 0 &&
+                    Objects.equals(unified, key.unified) &&
+                    tone == key.tone;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(unified, tone, size);
+        }
+    }
+}
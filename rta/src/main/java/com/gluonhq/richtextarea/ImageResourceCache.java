@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.geometry.Dimension2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of the images of the image decorations, shared by all the controls of the application.
+ *
+ * Images are loaded and decoded in the background, at the size they are displayed, and a
+ * placeholder image is provided in the meantime. When the size of an image is unknown, it is
+ * first decoded at its natural size, and once that size is known, wider images are decoded
+ * at the available width. The least recently used images are evicted when the total size of the
+ * decoded pixels exceeds a given number of bytes. Images in use by nodes remain valid for them.
+ *
+ * This class must be used from the JavaFX Application thread.
+ */
+final class ImageResourceCache {
+
+    public static final Logger LOGGER = Logger.getLogger(ImageResourceCache.class.getName());
+
+    static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+    private static final int MAX_NATURAL_SIZES = 1024;
+    private static final int PLACEHOLDER_SIZE = 16;
+
+    private static ImageResourceCache shared;
+
+    private final Map<Key, Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Dimension2D> naturalSizeMap = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Dimension2D> eldest) {
+            return size() > MAX_NATURAL_SIZES;
+        }
+    };
+    private final long maxBytes;
+    private long bytes;
+    private Image placeholder;
+
+    ImageResourceCache(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Max bytes " + maxBytes + " can't be negative");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the cache shared by all the controls
+     * @return the shared cache
+     */
+    static ImageResourceCache getShared() {
+        if (shared == null) {
+            shared = new ImageResourceCache(DEFAULT_MAX_BYTES);
+        }
+        return shared;
+    }
+
+    /**
+     * Gets the image for the given url, decoded at the given size
+     * @param url the url of the image
+     * @param width the width of the image, or -1 to use its natural width
+     * @param height the height of the image, or -1 to use its natural height
+     * @param maxWidth the maximum width when the natural size is used, or a non-positive
+     *                 value to ignore it
+     * @return a property with the placeholder image while the image is loading, or if it
+     * can't be loaded, and with the decoded image when it is ready
+     */
+    ReadOnlyObjectProperty<Image> getImage(String url, double width, double height, double maxWidth) {
+        Objects.requireNonNull(url);
+        if (width > -1 && height > -1) {
+            return getEntry(new Key(url, width, height)).image.getReadOnlyProperty();
+        }
+        Dimension2D naturalSize = naturalSizeMap.get(url);
+        if (naturalSize != null && maxWidth > 0 && naturalSize.getWidth() > maxWidth) {
+            return getEntry(new Key(url, Math.floor(maxWidth), 0)).image.getReadOnlyProperty();
+        }
+        return getEntry(new Key(url, 0, 0)).image.getReadOnlyProperty();
+    }
+
+    /**
+     * Checks if an image with the given url is known to be wider than the given width,
+     * so it should be requested again to be decoded at that width
+     * @param url the url of the image
+     * @param maxWidth the maximum width
+     * @return true if the natural width of the image is greater than the maximum width
+     */
+    boolean isWiderThan(String url, double maxWidth) {
+        Dimension2D naturalSize = naturalSizeMap.get(url);
+        return naturalSize != null && maxWidth > 0 && naturalSize.getWidth() > maxWidth;
+    }
+
+    /**
+     * Gets the image displayed while images are loading
+     * @return the placeholder image
+     */
+    Image getPlaceholder() {
+        if (placeholder == null) {
+            WritableImage writableImage = new WritableImage(PLACEHOLDER_SIZE, PLACEHOLDER_SIZE);
+            for (int i = 0; i < PLACEHOLDER_SIZE; i++) {
+                for (int j = 0; j < PLACEHOLDER_SIZE; j++) {
+                    writableImage.getPixelWriter().setColor(i, j, Color.LIGHTGRAY);
+                }
+            }
+            placeholder = writableImage;
+        }
+        return placeholder;
+    }
+
+    long getByteCount() {
+        return bytes;
+    }
+
+    void clear() {
+        entryMap.clear();
+        naturalSizeMap.clear();
+        bytes = 0;
+    }
+
+    private Entry getEntry(Key key) {
+        Entry entry = entryMap.get(key);
+        if (entry == null) {
+            entry = new Entry(key);
+            entryMap.put(key, entry);
+            entry.load();
+        }
+        return entry;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entryMap.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+        }
+    }
+
+    private final class Entry {
+
+        private final Key key;
+        private final ReadOnlyObjectWrapper<Image> image;
+        private boolean loaded;
+        private long bytes;
+
+        Entry(Key key) {
+            this.key = key;
+            this.image = new ReadOnlyObjectWrapper<>(getPlaceholder());
+        }
+
+        void load() {
+            // requested sizes of 0 keep the natural size
+            Image loadingImage = new Image(key.url, key.width, key.height, key.height == 0, true, true);
+            loadingImage.progressProperty().addListener((obs, ov, nv) -> {
+                if (nv.doubleValue() >= 1.0) {
+                    loaded(loadingImage);
+                }
+            });
+            if (loadingImage.getProgress() >= 1.0) {
+                loaded(loadingImage);
+            }
+        }
+
+        private void loaded(Image loadedImage) {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (loadedImage.isError()) {
+                LOGGER.log(Level.WARNING, "Error loading image " + key.url, loadedImage.getException());
+                // the placeholder is kept for the nodes that use it, a later request tries again
+                if (entryMap.get(key) == this) {
+                    entryMap.remove(key);
+                }
+                return;
+            }
+            if (key.width == 0 && key.height == 0) {
+                naturalSizeMap.put(key.url, new Dimension2D(loadedImage.getWidth(), loadedImage.getHeight()));
+            }
+            if (entryMap.get(key) == this) {
+                bytes = (long) loadedImage.getWidth() * (long) loadedImage.getHeight() * 4L;
+                ImageResourceCache.this.bytes += bytes;
+            }
+            image.set(loadedImage);
+            evict();
+        }
+    }
+
+    private static final class Key {
+
+        private final String url;
+        private final double width;
+        private final double height;
+
+        Key(String url, double width, double height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Double.compare(key.width, width) == 0 &&
+                    Double.compare(key.height, height) == 0 &&
+                    url.equals(key.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, width, height);
+        }
+    }
+}
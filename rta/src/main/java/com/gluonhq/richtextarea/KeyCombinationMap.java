@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyEvent;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable map of key combinations, compiled for lookup by key event.
+ * Key code combinations with defined modifiers are found with a single hash
+ * probe by key code and modifier mask. Other combinations, with ANY modifiers,
+ * are matched in order against the event.
+ * @param <V> the type of the values
+ */
+final class KeyCombinationMap<V> {
+
+    private static final int SHIFT = 1;
+    private static final int CONTROL = 1 << 1;
+    private static final int ALT = 1 << 2;
+    private static final int META = 1 << 3;
+
+    private final Map<Integer, V> exactMap = new HashMap<>();
+    private final Map<KeyCombination, V> matchMap = new LinkedHashMap<>();
+
+    private KeyCombinationMap(Map<? extends KeyCombination, V> map) {
+        map.forEach((kc, value) -> {
+            int key = getKey(kc);
+            if (key < 0) {
+                matchMap.put(kc, value);
+            } else {
+                exactMap.putIfAbsent(key, value);
+            }
+        });
+    }
+
+    /**
+     * Compiles a map of key combinations
+     * @param map the map of key combinations
+     * @return a new KeyCombinationMap
+     */
+    static <V> KeyCombinationMap<V> of(Map<? extends KeyCombination, V> map) {
+        return new KeyCombinationMap<>(map);
+    }
+
+    /**
+     * Gets the value of the key combination that matches the key event
+     * @param event the key event
+     * @return the value, or null if no key combination matches the event
+     */
+    V get(KeyEvent event) {
+        V value = exactMap.get(getKey(event.getCode(), event.isShiftDown(), event.isControlDown(),
+                event.isAltDown(), event.isMetaDown()));
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<KeyCombination, V> entry : matchMap.entrySet()) {
+            if (entry.getKey().match(event)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return exactMap.size() + matchMap.size();
+    }
+
+    // returns -1 if the combination can't be resolved to a single key code and modifier mask
+    private static int getKey(KeyCombination kc) {
+        if (!(kc instanceof KeyCodeCombination)) {
+            return -1;
+        }
+        KeyCombination.ModifierValue shortcut = kc.getShortcut();
+        KeyCombination.ModifierValue shift = kc.getShift();
+        KeyCombination.ModifierValue control = kc.getControl();
+        KeyCombination.ModifierValue alt = kc.getAlt();
+        KeyCombination.ModifierValue meta = kc.getMeta();
+        if (shortcut == KeyCombination.ModifierValue.ANY || shift == KeyCombination.ModifierValue.ANY ||
+                control == KeyCombination.ModifierValue.ANY || alt == KeyCombination.ModifierValue.ANY ||
+                meta == KeyCombination.ModifierValue.ANY) {
+            return -1;
+        }
+        // shortcut is resolved as META on Mac and as CONTROL elsewhere
+        boolean shortcutDown = shortcut == KeyCombination.ModifierValue.DOWN;
+        return getKey(((KeyCodeCombination) kc).getCode(),
+                shift == KeyCombination.ModifierValue.DOWN,
+                control == KeyCombination.ModifierValue.DOWN || (shortcutDown && !Tools.MAC),
+                alt == KeyCombination.ModifierValue.DOWN,
+                meta == KeyCombination.ModifierValue.DOWN || (shortcutDown && Tools.MAC));
+    }
+
+    private static int getKey(KeyCode code, boolean shift, boolean control, boolean alt, boolean meta) {
+        int mask = (shift ? SHIFT : 0) | (control ? CONTROL : 0) | (alt ? ALT : 0) | (meta ? META : 0);
+        return code.ordinal() << 4 | mask;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Index of the heights of the paragraphs of the document, as a Fenwick tree, so
+ * a single height can be updated in O(log n), while the total height is kept
+ * up to date and can be queried in O(1).
+ *
+ * Paragraphs use their measured height, once they have been rendered, or an
+ * estimate otherwise. Both are kept by paragraph content revision, so they are
+ * still valid after changes in other paragraphs.
+ */
+class ParagraphHeightIndex {
+
+    /**
+     * Vertical space between consecutive paragraphs
+     */
+    static final double PARAGRAPH_SPACING = 1.5;
+
+    private final ToDoubleFunction<Paragraph> estimator;
+    private final Map<Long, Integer> indexMap = new HashMap<>();
+    private final Map<Long, Double> measuredHeights = new HashMap<>();
+    private final Map<Long, Double> estimatedHeights = new HashMap<>();
+    private List<Paragraph> paragraphs = List.of();
+    private double[] heights = new double[0];
+    private double[] tree = new double[1];
+    private double totalHeight;
+
+    /**
+     * Creates an index of paragraph heights
+     * @param estimator a function that estimates the height of a paragraph that hasn't been rendered
+     */
+    ParagraphHeightIndex(ToDoubleFunction<Paragraph> estimator) {
+        this.estimator = Objects.requireNonNull(estimator);
+    }
+
+    /**
+     * Sets the paragraphs of the document, keeping the heights of the paragraphs with
+     * the same content revision, in O(n)
+     * @param paragraphs the list of paragraphs, sorted by position
+     */
+    void setParagraphs(List<Paragraph> paragraphs) {
+        this.paragraphs = List.copyOf(paragraphs);
+        indexMap.clear();
+        for (int i = 0; i < this.paragraphs.size(); i++) {
+            indexMap.put(this.paragraphs.get(i).getRevision(), i);
+        }
+        measuredHeights.keySet().retainAll(indexMap.keySet());
+        estimatedHeights.keySet().retainAll(indexMap.keySet());
+        rebuild();
+    }
+
+    /**
+     * Sets the height of a paragraph that has been rendered, in O(log n)
+     * @param paragraph the paragraph
+     * @param height the measured height
+     */
+    void setMeasuredHeight(Paragraph paragraph, double height) {
+        Integer index = indexMap.get(paragraph.getRevision());
+        if (index == null) {
+            return;
+        }
+        measuredHeights.put(paragraph.getRevision(), height);
+        update(index, height + PARAGRAPH_SPACING);
+    }
+
+    /**
+     * Discards all the measured and estimated heights, when they are no longer valid
+     * (e.g. the width of the content changed), in O(n)
+     */
+    void invalidate() {
+        measuredHeights.clear();
+        estimatedHeights.clear();
+        rebuild();
+    }
+
+    /**
+     * Gets the height of a paragraph, including the spacing after it
+     * @param index the index of the paragraph
+     * @return the height of the paragraph
+     */
+    double getHeight(int index) {
+        return heights[index];
+    }
+
+    /**
+     * Gets the vertical offset of a paragraph, in O(log n)
+     * @param index the index of the paragraph
+     * @return the sum of the heights of the paragraphs before it
+     */
+    double getOffset(int index) {
+        double offset = 0d;
+        for (int i = index; i > 0; i -= i & -i) {
+            offset += tree[i];
+        }
+        return offset;
+    }
+
+    /**
+     * Gets the total height of the paragraphs, in O(1)
+     * @return the total height
+     */
+    double getTotalHeight() {
+        return totalHeight;
+    }
+
+    int size() {
+        return heights.length;
+    }
+
+    private void rebuild() {
+        int size = paragraphs.size();
+        heights = new double[size];
+        tree = new double[size + 1];
+        totalHeight = 0d;
+        for (int i = 0; i < size; i++) {
+            Paragraph paragraph = paragraphs.get(i);
+            Double height = measuredHeights.get(paragraph.getRevision());
+            if (height == null) {
+                height = estimatedHeights.computeIfAbsent(paragraph.getRevision(), r -> estimator.applyAsDouble(paragraph));
+            }
+            heights[i] = height + PARAGRAPH_SPACING;
+            totalHeight += heights[i];
+            // linear construction of the Fenwick tree
+            tree[i + 1] += heights[i];
+            int parent = (i + 1) + ((i + 1) & -(i + 1));
+            if (parent <= size) {
+                tree[parent] += tree[i + 1];
+            }
+        }
+    }
+
+    private void update(int index, double height) {
+        double delta = height - heights[index];
+        if (delta == 0d) {
+            return;
+        }
+        heights[index] = height;
+        totalHeight += delta;
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+}
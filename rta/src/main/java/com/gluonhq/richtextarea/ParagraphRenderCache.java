@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import javafx.scene.Node;
+import javafx.scene.shape.Path;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of the nodes built for the paragraphs of the control, keyed by the
+ * paragraph content revision, so a cell can reuse them when it shows again a paragraph
+ * that hasn't changed, instead of walking the model and building new nodes.
+ *
+ * A content is either in use by a single cell or stored in the cache: cells take it
+ * out when they show the paragraph, and put it back when they are reused for a
+ * different one. The least recently used contents are evicted when the total number
+ * of cached nodes exceeds the limit.
+ */
+class ParagraphRenderCache {
+
+    static final int DEFAULT_MAX_NODES = 5000;
+
+    private final Map<Long, Content> contentMap = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxNodes;
+    private int nodes;
+    private int generation;
+
+    ParagraphRenderCache() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    ParagraphRenderCache(int maxNodes) {
+        if (maxNodes < 0) {
+            throw new IllegalArgumentException("Max nodes " + maxNodes + " can't be negative");
+        }
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Creates a content for a paragraph, valid until the cache is cleared
+     */
+    synchronized Content create(long revision, List<Node> fragments, List<IndexRangeColor> background, int nonTextNodes) {
+        return new Content(revision, generation, fragments, background, nonTextNodes);
+    }
+
+    /**
+     * Takes out of the cache the content of a paragraph
+     * @param revision the content revision of the paragraph
+     * @return the content, or null if it is not cached
+     */
+    synchronized Content take(long revision) {
+        Content content = contentMap.remove(revision);
+        if (content != null) {
+            nodes -= content.fragments.size();
+        }
+        return content;
+    }
+
+    /**
+     * Puts back in the cache a content that is no longer in use
+     * @param content the content of a paragraph
+     */
+    synchronized void release(Content content) {
+        if (!isValid(content)) {
+            return;
+        }
+        Content old = contentMap.put(content.revision, content);
+        if (old != null) {
+            nodes -= old.fragments.size();
+        }
+        nodes += content.fragments.size();
+        Iterator<Content> iterator = contentMap.values().iterator();
+        while (nodes > maxNodes && iterator.hasNext()) {
+            nodes -= iterator.next().fragments.size();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Checks if a content was created after the last time the cache was cleared
+     */
+    synchronized boolean isValid(Content content) {
+        return content != null && content.generation == generation;
+    }
+
+    /**
+     * Removes the contents of paragraphs that are no longer in the document
+     * @param revisions the content revisions of the current paragraphs
+     */
+    synchronized void retainAll(Collection<Long> revisions) {
+        Iterator<Content> iterator = contentMap.values().iterator();
+        while (iterator.hasNext()) {
+            Content content = iterator.next();
+            if (!revisions.contains(content.revision)) {
+                nodes -= content.fragments.size();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the contents, and invalidates those in use, when
+     * the nodes have to be built again (e.g. the width or the skin tone changed)
+     */
+    synchronized void clear() {
+        contentMap.clear();
+        nodes = 0;
+        generation++;
+    }
+
+    synchronized int getNodeCount() {
+        return nodes;
+    }
+
+    static class Content {
+
+        private final long revision;
+        private final int generation;
+        private final List<Node> fragments;
+        private final List<IndexRangeColor> background;
+        private final int nonTextNodes;
+        private double backgroundPathsWidth;
+        private Collection<Path> backgroundPaths;
+
+        private Content(long revision, int generation, List<Node> fragments, List<IndexRangeColor> background, int nonTextNodes) {
+            this.revision = revision;
+            this.generation = generation;
+            this.fragments = List.copyOf(fragments);
+            this.background = List.copyOf(background);
+            this.nonTextNodes = nonTextNodes;
+        }
+
+        long getRevision() {
+            return revision;
+        }
+
+        List<Node> getFragments() {
+            return fragments;
+        }
+
+        List<IndexRangeColor> getBackground() {
+            return background;
+        }
+
+        int getNonTextNodes() {
+            return nonTextNodes;
+        }
+
+        /**
+         * Gets the background paths built for this content
+         * @param width the width of the text flow
+         * @return the paths, or null if they were not built for that width
+         */
+        Collection<Path> getBackgroundPaths(double width) {
+            return backgroundPaths != null && backgroundPathsWidth == width ? backgroundPaths : null;
+        }
+
+        void setBackgroundPaths(double width, Collection<Path> paths) {
+            this.backgroundPathsWidth = width;
+            this.backgroundPaths = paths;
+        }
+    }
+}
@@ -33,10 +33,7 @@ import com.gluonhq.richtextarea.model.Paragraph;
 import com.gluonhq.richtextarea.model.ParagraphDecoration;
 import com.gluonhq.richtextarea.model.TextDecoration;
 import com.gluonhq.richtextarea.viewmodel.RichTextAreaViewModel;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
 import javafx.collections.SetChangeListener;
@@ -46,7 +43,6 @@ import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseDragEvent;
@@ -67,7 +63,6 @@ import javafx.scene.text.HitInfo;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
 import javafx.scene.text.TextFlow;
-import javafx.util.Duration;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -92,11 +87,12 @@ class ParagraphTile extends HBox {
     private final HBox graphicBox;
     private final Pane contentPane;
     private final List<Layer> layers;
+    // grid and decoration of the table, that can be reused for the same paragraph
+    private GridPane tableGrid;
+    private ParagraphDecoration tableDecoration;
     private final RichTextArea control;
     private final RichTextAreaSkin richTextAreaSkin;
     private final RichTextAreaViewModel viewModel;
-    private final ChangeListener<Number> caretPositionListener = (o, ocp, p) -> updateCaretPosition(p.intValue());
-    private final ChangeListener<Selection> selectionListener = (o, os, selection) -> updateSelection(selection);
 
 
 
@@ -119,30 +115,45 @@ class ParagraphTile extends HBox {
         setSpacing(0);
     }
 
-    void setParagraph(Paragraph paragraph, List<Node> fragments, List<Integer> positions, List<IndexRangeColor> background) {
+    void setParagraph(Paragraph paragraph, ParagraphRenderCache.Content content, List<Integer> positions) {
 
-        layers.forEach(Layer::reset);
-        layers.clear();
+        boolean reuseTable = paragraph != null && canReuseTable(paragraph.getDecoration(), positions);
+        boolean caretReleased = false;
+        if (!reuseTable) {
+            for (Layer layer : layers) {
+                caretReleased |= layer.reset();
+            }
+            layers.clear();
+            tableGrid = null;
+            tableDecoration = null;
+            contentPane.getChildren().clear();
+        }
         graphicBox.getChildren().clear();
-        contentPane.getChildren().clear();
-        viewModel.caretPositionProperty().removeListener(caretPositionListener);
-        viewModel.selectionProperty().removeListener(selectionListener);
         this.paragraph = paragraph;
+        richTextAreaSkin.setTileParagraph(this, paragraph);
+        if (caretReleased) {
+            richTextAreaSkin.restoreCaretOwner(this);
+        }
         if (paragraph == null) {
             contentPane.setPrefWidth(0);
             return;
         }
         ParagraphDecoration decoration = paragraph.getDecoration();
-        viewModel.caretPositionProperty().addListener(caretPositionListener);
-        viewModel.selectionProperty().addListener(selectionListener);
+        List<Node> fragments = content.getFragments();
+        List<IndexRangeColor> background = content.getBackground();
         if (decoration.hasTableDecoration()) {
             if (!fragments.isEmpty()) {
-                HBox gridBox = createGridBox(fragments, positions, background, decoration);
-                contentPane.getChildren().add(gridBox);
+                if (reuseTable) {
+                    updateGridBox(fragments, positions, background);
+                } else {
+                    HBox gridBox = createGridBox(fragments, positions, background, decoration);
+                    contentPane.getChildren().add(gridBox);
+                }
                 contentPane.layout();
             }
         } else {
             Layer layer = new Layer(paragraph.getStart(), paragraph.getEnd(), false);
+            layer.renderContent = content;
             layer.setContent(fragments, background, decoration);
             layers.add(layer);
             contentPane.getChildren().add(layer);
@@ -152,7 +163,14 @@ class ParagraphTile extends HBox {
         }
         //*** added by TR
         paragraph.setParaHeight(contentPane.prefHeight(control.getPrefWidth()));
-
+        richTextAreaSkin.getParagraphHeightIndex().setMeasuredHeight(paragraph, paragraph.getParaHeight());
+        if (!richTextAreaSkin.hasParagraphWidth(paragraph)) {
+            richTextAreaSkin.setParagraphWidth(paragraph, layers.stream()
+                    .mapToDouble(l -> l.nodesWidth)
+                    .max()
+                    .orElse(0d));
+        }
+        updateSearchHighlights();
     }
 
     private HBox createGridBox(List<Node> fragments, List<Integer> positions, List<IndexRangeColor> background, ParagraphDecoration decoration) {
@@ -166,22 +184,17 @@ class ParagraphTile extends HBox {
             cc.setPercentWidth(100.0 / (double) c);
             grid.getColumnConstraints().add(cc);
         }
+        List<List<Node>> cellFragments = splitTableFragments(fragments, positions, getTableCellCount(decoration, positions));
         int index = 0;
         for (int i = 0; i < r; i++) {
             double prefHeight = 0d;
             for (int j = 0; j < c; j++) {
-                if (index + 1 >= positions.size()) {
+                if (index >= cellFragments.size()) {
                     break;
                 }
                 Layer layer = new Layer(positions.get(index), positions.get(index + 1), true);
                 ParagraphDecoration pd = ParagraphDecoration.builder().fromDecoration(decoration).alignment(ta[i][j]).build();
-                int tableIndex = index;
-                layer.setContent(fragments.stream()
-                        .filter(n -> {
-                            int p = (int) n.getProperties().getOrDefault(TABLE_SEPARATOR, -1);
-                            return (positions.get(tableIndex) <= p && p < positions.get(tableIndex + 1));
-                        })
-                        .collect(Collectors.toList()), background, pd);
+                layer.setTableCellContent(cellFragments.get(index), background, pd);
                 layer.updatePrefWidth(100);
                 layers.add(layer);
                 grid.add(layer, j, i);
@@ -193,6 +206,8 @@ class ParagraphTile extends HBox {
             rc.setMaxHeight(Double.MAX_VALUE);
             grid.getRowConstraints().add(rc);
         }
+        tableGrid = grid;
+        tableDecoration = decoration;
         HBox gridBox = new HBox(grid);
         gridBox.setPrefHeight(grid.getPrefHeight() + 1);
         gridBox.setPrefWidth(richTextAreaSkin.textFlowPrefWidthProperty.get());
@@ -201,6 +216,75 @@ class ParagraphTile extends HBox {
         return gridBox;
     }
 
+    /**
+     * Updates the existing table layers with the new cell ranges, and sets the new fragments
+     * only for the cells with changed content, so the other cells don't need a new layout
+     */
+    private void updateGridBox(List<Node> fragments, List<Integer> positions, List<IndexRangeColor> background) {
+        int c = tableDecoration.getTableDecoration().getColumns();
+        TextAlignment[][] ta = tableDecoration.getTableDecoration().getCellAlignment();
+        List<List<Node>> cellFragments = splitTableFragments(fragments, positions, layers.size());
+        Set<Integer> changedRows = new HashSet<>();
+        for (int index = 0; index < layers.size(); index++) {
+            Layer layer = layers.get(index);
+            layer.setRange(positions.get(index), positions.get(index + 1));
+            if (!layer.hasTableCellContent(cellFragments.get(index))) {
+                int i = index / c;
+                ParagraphDecoration pd = ParagraphDecoration.builder().fromDecoration(tableDecoration).alignment(ta[i][index % c]).build();
+                layer.setTableCellContent(cellFragments.get(index), background, pd);
+                changedRows.add(i);
+            }
+        }
+        for (int i : changedRows) {
+            double prefHeight = 0d;
+            for (int index = i * c; index < Math.min((i + 1) * c, layers.size()); index++) {
+                prefHeight = Math.max(prefHeight, layers.get(index).prefHeight(100));
+            }
+            tableGrid.getRowConstraints().get(i).setMinHeight(prefHeight);
+        }
+        ((HBox) tableGrid.getParent()).setPrefWidth(richTextAreaSkin.textFlowPrefWidthProperty.get());
+    }
+
+    private boolean canReuseTable(ParagraphDecoration decoration, List<Integer> positions) {
+        return tableGrid != null && decoration.hasTableDecoration() &&
+                decoration.equals(tableDecoration) &&
+                layers.size() == getTableCellCount(decoration, positions) &&
+                !layers.isEmpty();
+    }
+
+    private static int getTableCellCount(ParagraphDecoration decoration, List<Integer> positions) {
+        int cells = decoration.getTableDecoration().getRows() * decoration.getTableDecoration().getColumns();
+        return Math.max(0, Math.min(cells, positions.size() - 1));
+    }
+
+    /**
+     * Splits the fragments of a table into its cells in a single pass, as fragments are sorted by their
+     * position. Fragments without position are not part of any cell
+     */
+    private static List<List<Node>> splitTableFragments(List<Node> fragments, List<Integer> positions, int cells) {
+        List<List<Node>> cellFragments = new ArrayList<>(cells);
+        for (int index = 0; index < cells; index++) {
+            cellFragments.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (Node fragment : fragments) {
+            int p = (int) fragment.getProperties().getOrDefault(TABLE_SEPARATOR, -1);
+            if (p < 0) {
+                continue;
+            }
+            while (index < cells && p >= positions.get(index + 1)) {
+                index++;
+            }
+            if (index == cells) {
+                break;
+            }
+            if (positions.get(index) <= p) {
+                cellFragments.get(index).add(fragment);
+            }
+        }
+        return cellFragments;
+    }
+
     private void updateGraphicBox(Layer layer, BiFunction<Integer, ParagraphDecoration.GraphicType, Node> graphicFactory) {
         ParagraphDecoration decoration = paragraph.getDecoration();
         int indentationLevel = decoration.getIndentationLevel();
@@ -298,17 +382,6 @@ class ParagraphTile extends HBox {
         });
     }
 
-    void evictUnusedObjects(Set<Font> usedFonts, Set<Image> usedImages) {
-        //the try-catch is from me to help user
-        try {
-            layers.forEach(layer -> layer.evictUnusedObjects(usedFonts, usedImages));
-        }
-        catch (ConcurrentModificationException e) {
-            String message = "Concurrent Modification Exception (Paragraph Tile, 001).  Please save your work and restart SLAPP.  You should not have lost any of your work.";
-            Alerts.showSimpleAlert("RTA Error", message, RichTextArea.mainStage);
-        }
-    }
-
     void updateLayout() {
         if (control == null || viewModel == null) {
             return;
@@ -319,14 +392,6 @@ class ParagraphTile extends HBox {
         });
     }
 
-    boolean hasCaret() {
-        return layers.stream().anyMatch(Layer::hasCaret);
-    }
-
-    void resetCaret() {
-        layers.stream().filter(Layer::hasCaret).findFirst().ifPresent(Layer::reset);
-    }
-
     int getNextRowPosition(double x, boolean down) {
         return layers.stream()
                 .findFirst()
@@ -364,39 +429,47 @@ class ParagraphTile extends HBox {
                 (nextCell >= 0 ? Math.max(0, layers.get(nextCell).end - 1) : Math.max(0, layers.get(0).start - 1));
     }
 
-    private void updateCaretPosition(int caretPosition) {
+    void updateCaretPosition(int caretPosition) {
         layers.forEach(l -> l.updateCaretPosition(caretPosition));
     }
 
-    private void updateSelection(Selection selection) {
+    void updateSelection(Selection selection) {
         layers.forEach(l -> l.updateSelection(selection));
     }
 
+    void updateSearchHighlights() {
+        if (paragraph != null) {
+            int paragraphStart = paragraph.getStart();
+            int[] matches = richTextAreaSkin.getSearchMatches(paragraph);
+            layers.forEach(l -> l.updateSearchHighlights(paragraphStart, matches));
+        }
+    }
 
-    private class Layer extends Pane {
 
-        private final Timeline caretTimeline = new Timeline(
-                new KeyFrame(Duration.ZERO        , e -> setCaretVisibility(true)),
-                new KeyFrame(Duration.seconds(0.5), e -> setCaretVisibility(false)),
-                new KeyFrame(Duration.seconds(1.0))
-        );
+    private class Layer extends Pane {
 
         private final ObservableSet<Path> textBackgroundColorPaths = FXCollections.observableSet();
         private final Path caretShape = new Path();
         private final Path selectionShape = new Path();
+        private final Path searchHighlightShape = new Path();
         private final TextFlow textFlow = new TextFlow();
         private double textFlowLayoutX, textFlowLayoutY;
 
 
 
-        private final int start, end;
+        private int start, end;
         private final boolean isTableCell;
+        // describes the content of a table cell, to find out if it changed
+        private List<Object> tableCellSignature;
+        // content that keeps the background paths of the layer, if it can be reused
+        private ParagraphRenderCache.Content renderContent;
+        private boolean active = true;
+        private double nodesWidth;
 
         public Layer(int start, int end, boolean isTableCell) {
             this.start = start;
             this.end = end;
             this.isTableCell = isTableCell;
-            caretTimeline.setCycleCount(Timeline.INDEFINITE);
             textFlow.setFocusTraversable(false);
             textFlow.getStyleClass().setAll("text-flow");
             textFlow.setOnMousePressed(this::mousePressedListener);
@@ -404,10 +477,11 @@ class ParagraphTile extends HBox {
             caretShape.setFocusTraversable(false);
             caretShape.getStyleClass().add("caret");
             selectionShape.getStyleClass().setAll("selection");
+            searchHighlightShape.getStyleClass().setAll("search-highlight");
             textBackgroundColorPaths.addListener(this::updateLayer);
 
             getChildren().addAll(textBackgroundColorPaths);
-            getChildren().addAll(selectionShape, caretShape, textFlow);
+            getChildren().addAll(searchHighlightShape, selectionShape, caretShape, textFlow);
             getStyleClass().add("layer");
         }
 
@@ -435,25 +509,86 @@ class ParagraphTile extends HBox {
             textFlowLayoutX = 1d + decoration.getLeftInset();
             textFlowLayoutY = 1d + decoration.getTopInset();
 
-            Platform.runLater(() -> addBackgroundPathsToLayers(background));
+            if (!background.isEmpty()) {
+                // once laid out, at most once per pulse
+                richTextAreaSkin.requestBackgroundUpdate(this, () -> addBackgroundPathsToLayers(background));
+            }
 
 
 //           This gets the content width.  Appears to be the number I need to grow nodes with content.
 
+            nodesWidth = 0;
             if (fragments != null) {
-                double nodesWidth = 0;
                 for (Node fragment : fragments) {
                     nodesWidth = nodesWidth + fragment.getLayoutBounds().getWidth();
                 }
-                viewModel.setNodesWidth(nodesWidth);
             }
         }
 
-        void reset() {
-            caretTimeline.stop();
+        void setTableCellContent(List<Node> fragments, List<IndexRangeColor> background, ParagraphDecoration decoration) {
+            setContent(fragments, background, decoration);
+            tableCellSignature = getSignature(fragments);
+        }
+
+        boolean hasTableCellContent(List<Node> fragments) {
+            return tableCellSignature != null && tableCellSignature.equals(getSignature(fragments));
+        }
+
+        void setRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        // returns true if the layer had the caret
+        boolean reset() {
+            active = false;
+            stopCaretBlink();
+            caretShape.getElements().clear();
+            boolean caretReleased = richTextAreaSkin.releaseCaretOwner(caretShape);
+            // release the fragments and background paths, so they can be reused by other cells
+            textFlow.getChildren().clear();
+            textBackgroundColorPaths.clear();
+            searchHighlightShape.getElements().clear();
+            return caretReleased;
+        }
+
+        private List<Object> getSignature(List<Node> fragments) {
+            List<Object> signature = new ArrayList<>(fragments.size());
+            for (Node node : fragments) {
+                if (node instanceof Text && node.getCursor() == null) {
+                    Text text = (Text) node;
+                    signature.add(Arrays.asList(text.getText(), text.getFont(), text.getFill(), text.isUnderline(),
+                            text.isStrikethrough(), text.getTranslateX(), text.getTranslateY()));
+                } else if (node instanceof ImageView && node.getCursor() == null) {
+                    ImageView imageView = (ImageView) node;
+                    signature.add(Arrays.asList(imageView.getImage(), imageView.getViewport(),
+                            imageView.getFitWidth(), imageView.getFitHeight()));
+                } else {
+                    // links and blocks are always replaced
+                    signature.add(new Object());
+                }
+            }
+            return signature;
         }
 
         private void addBackgroundPathsToLayers(List<IndexRangeColor> backgroundIndexRanges) {
+            if (!active) {
+                return;
+            }
+            double width = textFlow.getWidth();
+            Collection<Path> paths = renderContent != null ? renderContent.getBackgroundPaths(width) : null;
+            if (paths == null) {
+                paths = createBackgroundPaths(backgroundIndexRanges);
+                if (renderContent != null) {
+                    renderContent.setBackgroundPaths(width, paths);
+                }
+            }
+            Collection<Path> fillPaths = paths;
+            textBackgroundColorPaths.removeIf(path -> !fillPaths.contains(path));
+            textBackgroundColorPaths.addAll(fillPaths);
+        }
+
+        private Collection<Path> createBackgroundPaths(List<IndexRangeColor> backgroundIndexRanges) {
             Map<Paint, Path> fillPathMap = backgroundIndexRanges.stream()
                     .map(indexRangeBackground -> {
                         final Path path = new BackgroundColorPath(textFlow.rangeShape(indexRangeBackground.getStart(), indexRangeBackground.getEnd()));
@@ -468,8 +603,7 @@ class ParagraphTile extends HBox {
                         union.setFill(p1.getFill());
                         return union;
                     }));
-            textBackgroundColorPaths.removeIf(path -> !fillPathMap.containsValue(path));
-            textBackgroundColorPaths.addAll(fillPathMap.values());
+            return List.copyOf(fillPathMap.values());
         }
 
         void mousePressedListener(MouseEvent e) {
@@ -528,22 +662,6 @@ class ParagraphTile extends HBox {
             e.consume();
         }
 
-        void evictUnusedObjects(Set<Font> usedFonts, Set<Image> usedImages) {
-            usedFonts.addAll(textFlow.getChildren()
-                    .stream()
-                    .filter(Text.class::isInstance)
-                    .map(t -> ((Text) t).getFont())
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet()));
-
-            usedImages.addAll(textFlow.getChildren()
-                    .stream()
-                    .filter(ImageView.class::isInstance)
-                    .map(t -> ((ImageView) t).getImage())
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toSet()));
-        }
-
         double getCaretY() {
             var pathElements = textFlow.caretShape(0, false);
             return Stream.of(pathElements)
@@ -559,7 +677,7 @@ class ParagraphTile extends HBox {
                     .map(Text.class::cast)
                     .findFirst()
                     .orElse(null);
-            return Font.font(textNode != null ? textNode.getFont().getSize() : 14d);
+            return StyleResourceCache.getShared().getFont(null, null, null, textNode != null ? textNode.getFont().getSize() : 14d);
         }
 
         int getNextRowPosition(double x, boolean down) {
@@ -584,13 +702,14 @@ class ParagraphTile extends HBox {
 
         private void updateCaretPosition(int caretPosition) {
             caretShape.getElements().clear();
+            richTextAreaSkin.releaseCaretOwner(caretShape);
             if ((!control.isFocused() && richTextAreaSkin.dragAndDropStart == -1) ||
                     paragraph == null || caretPosition < start || getParagraphLimit() <= caretPosition) {
-                caretTimeline.stop();
+                stopCaretBlink();
                 return;
             }
             if (caretPosition < 0 || !control.isEditable()) {
-                caretTimeline.stop();
+                stopCaretBlink();
             } else {
                 var pathElements = textFlow.caretShape(caretPosition - start, true);
                 if (pathElements.length > 0) {
@@ -612,7 +731,8 @@ class ParagraphTile extends HBox {
                         caretShape.getElements().add(new LineTo(originX, caretSize));
                     }
                     richTextAreaSkin.lastValidCaretPosition = caretPosition;
-                    caretTimeline.play();
+                    richTextAreaSkin.setCaretOwner(ParagraphTile.this, caretShape);
+                    richTextAreaSkin.startCaretBlink(caretShape);
                     updateCaretOrigin();
                 }
             }
@@ -630,12 +750,8 @@ class ParagraphTile extends HBox {
             return limit;
         }
 
-        private void setCaretVisibility(boolean on) {
-            if (!caretShape.getElements().isEmpty()) {
-                // Opacity is used since we don't want the changing caret bounds to affect the layout
-                // Otherwise text appears to be jumping
-                caretShape.setOpacity(on ? 1 : 0);
-            }
+        void stopCaretBlink() {
+            richTextAreaSkin.stopCaretBlink(caretShape);
         }
 
         private void updateSelection(Selection selection) {
@@ -652,6 +768,32 @@ class ParagraphTile extends HBox {
             selectionShape.setLayoutY(textFlowLayoutY);
         }
 
+        void updateSearchHighlights(int paragraphStart, int[] matches) {
+            if (matches.length == 0) {
+                richTextAreaSkin.cancelBackgroundUpdate(searchHighlightShape);
+                searchHighlightShape.getElements().clear();
+                return;
+            }
+            // once laid out, at most once per pulse
+            richTextAreaSkin.requestBackgroundUpdate(searchHighlightShape, () -> {
+                if (!active) {
+                    return;
+                }
+                List<PathElement> elements = new ArrayList<>();
+                for (int i = 0; i < matches.length; i += 2) {
+                    int matchStart = paragraphStart + matches[i];
+                    int matchEnd = paragraphStart + matches[i + 1];
+                    if (matchStart < end && matchEnd > start) {
+                        Collections.addAll(elements, textFlow.rangeShape(
+                                Math.max(start, matchStart) - start, Math.min(end, matchEnd) - start));
+                    }
+                }
+                searchHighlightShape.getElements().setAll(elements);
+                searchHighlightShape.setLayoutX(textFlowLayoutX);
+                searchHighlightShape.setLayoutY(textFlowLayoutY);
+            });
+        }
+
         private void updateLayer(SetChangeListener.Change<? extends Path> change) {
             if (change.wasAdded()) {
                 getChildren().add(0, change.getElementAdded());
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the content widths of the paragraphs of the document, that maintains
+ * the maximum width. Widths are kept by paragraph content revision, so they are
+ * only set again when the content of a paragraph changes, and the maximum is
+ * updated in O(log n).
+ */
+class ParagraphWidthIndex {
+
+    private final Map<Long, Double> widthMap = new HashMap<>();
+    // count of paragraphs by width
+    private final TreeMap<Double, Integer> widthCounts = new TreeMap<>();
+
+    /**
+     * Sets the paragraphs of the document, discarding the widths of paragraphs
+     * that no longer exist
+     * @param paragraphs the list of paragraphs
+     * @return true if the maximum width changed
+     */
+    boolean setParagraphs(List<Paragraph> paragraphs) {
+        double oldMaxWidth = getMaxWidth();
+        Set<Long> revisions = paragraphs.stream()
+                .map(Paragraph::getRevision)
+                .collect(Collectors.toSet());
+        widthMap.entrySet().removeIf(entry -> {
+            if (!revisions.contains(entry.getKey())) {
+                removeWidth(entry.getValue());
+                return true;
+            }
+            return false;
+        });
+        return getMaxWidth() != oldMaxWidth;
+    }
+
+    /**
+     * Checks if the width of the paragraph is already known
+     * @param paragraph the paragraph
+     * @return true if the width was set for the content revision of the paragraph
+     */
+    boolean hasWidth(Paragraph paragraph) {
+        return widthMap.containsKey(paragraph.getRevision());
+    }
+
+    /**
+     * Sets the content width of a paragraph
+     * @param paragraph the paragraph
+     * @param width the width of its content
+     * @return true if the maximum width changed
+     */
+    boolean setWidth(Paragraph paragraph, double width) {
+        double oldMaxWidth = getMaxWidth();
+        Double oldWidth = widthMap.put(paragraph.getRevision(), width);
+        if (oldWidth != null) {
+            removeWidth(oldWidth);
+        }
+        widthCounts.merge(width, 1, Integer::sum);
+        return getMaxWidth() != oldMaxWidth;
+    }
+
+    /**
+     * Gets the maximum content width of the paragraphs with known width
+     * @return the maximum width, or 0 if there are none
+     */
+    double getMaxWidth() {
+        return widthCounts.isEmpty() ? 0d : widthCounts.lastKey();
+    }
+
+    void clear() {
+        widthMap.clear();
+        widthCounts.clear();
+    }
+
+    private void removeWidth(double width) {
+        widthCounts.computeIfPresent(width, (w, count) -> count == 1 ? null : count - 1);
+    }
+}
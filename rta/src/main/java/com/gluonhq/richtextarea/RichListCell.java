@@ -28,7 +28,6 @@
 package com.gluonhq.richtextarea;
 
 import com.gluonhq.emoji.Emoji;
-import com.gluonhq.emoji.EmojiData;
 import com.gluonhq.emoji.EmojiSkinTone;
 import com.gluonhq.emoji.util.TextUtils;
 import com.gluonhq.richtextarea.model.Block;
@@ -40,6 +39,10 @@ import com.gluonhq.richtextarea.model.TextBuffer;
 import com.gluonhq.richtextarea.model.TextDecoration;
 import com.gluonhq.richtextarea.model.TextUnit;
 import com.gluonhq.richtextarea.model.Unit;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.beans.property.ReadOnlyObjectProperty;
 import javafx.geometry.VPos;
 import javafx.scene.Cursor;
 import javafx.scene.Group;
@@ -56,11 +59,9 @@ import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -71,11 +72,12 @@ import static com.gluonhq.richtextarea.model.TableDecoration.TABLE_SEPARATOR;
 class RichListCell extends ListCell<Paragraph> {
 
     private static final Font MIN_LF_FONT = Font.font(10);
-
-    private final static Map<String, Color> COLOR_MAP = new HashMap<>();
+    private static final Object LOADED_LISTENER_KEY = new Object();
 
     private final RichTextAreaSkin richTextAreaSkin;
     private final ParagraphTile paragraphTile;
+    private ParagraphRenderCache.Content renderContent;
+    private boolean renderContentCacheable;
 
     RichListCell(RichTextAreaSkin richTextAreaSkin) {
         this.richTextAreaSkin = richTextAreaSkin;
@@ -154,76 +156,114 @@ class RichListCell extends ListCell<Paragraph> {
     protected void updateItem(Paragraph item, boolean empty) {
         super.updateItem(item, empty);
         if (item != null && !empty) {
-            var fragments = new ArrayList<Node>();
-            var backgroundIndexRanges = new ArrayList<IndexRangeColor>();
-            var length = new AtomicInteger();
             var positions = new ArrayList<Integer>();
             positions.add(item.getStart());
-            AtomicInteger tp = new AtomicInteger(item.getStart());
-            richTextAreaSkin.getViewModel().walkFragments((unit, decoration) -> {
-                if (decoration instanceof TextDecoration && !unit.isEmpty()) {
-                    if (item.getDecoration().hasTableDecoration()) {
-                        if (unit instanceof TextUnit) {
-                            String text = unit.getText();
-                            AtomicInteger s = new AtomicInteger();
-                            IntStream.iterate(text.indexOf(TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR),
-                                            index -> index >= 0,
-                                            index -> text.indexOf(TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR, index + 1))
-                                    .boxed()
-                                    .forEach(i -> {
-                                        String tableText = text.substring(s.getAndSet(i + 1), i + 1);
-                                        final Text textNode = buildText(tableText, (TextDecoration) decoration);
-                                        textNode.getProperties().put(TABLE_SEPARATOR, tp.get());
-                                        fragments.add(textNode);
-                                        positions.add(tp.addAndGet(tableText.length()));
-                                    });
-                            if (s.get() < text.length()) {
-                                String tableText = text.substring(s.get()).replace("\n", TextBuffer.ZERO_WIDTH_TEXT);
-                                final Text textNode = buildText(tableText, (TextDecoration) decoration);
-                                textNode.getProperties().put(TABLE_SEPARATOR, tp.getAndAdd(tableText.length()));
-                                fragments.add(textNode);
-                                if (text.substring(s.get()).contains("\n")) {
-                                    positions.add(tp.get());
-                                }
-                            }
-                        } else {
-                            final Node node = buildNode(unit, (TextDecoration) decoration);
-                            node.getProperties().put(TABLE_SEPARATOR, tp.getAndIncrement());
-                            fragments.add(node);
-                            length.addAndGet(unit.length());
-                            if (unit instanceof EmojiUnit) {
-                                richTextAreaSkin.nonTextNodes.incrementAndGet();
+            ParagraphRenderCache.Content itemContent = getContent(item, positions);
+            richTextAreaSkin.nonTextNodes.addAndGet(itemContent.getNonTextNodes());
+            paragraphTile.setParagraph(item, itemContent, positions);
+            setGraphic(paragraphTile);
+            // required: update caret and selection
+            paragraphTile.updateLayout();
+        } else {
+            // clean up listeners
+            paragraphTile.setParagraph(null, null, null);
+            releaseContent();
+            setGraphic(null);
+        }
+    }
+
+    /**
+     * Gets the nodes for the paragraph: those already in use by this cell or those
+     * cached for its content revision, if valid, or otherwise builds new ones.
+     * Tables are always built, as their nodes refer to global positions
+     */
+    private ParagraphRenderCache.Content getContent(Paragraph item, List<Integer> positions) {
+        ParagraphRenderCache renderCache = richTextAreaSkin.getParagraphRenderCache();
+        boolean table = item.getDecoration().hasTableDecoration();
+        if (!table && renderCache.isValid(renderContent) && renderContent.getRevision() == item.getRevision()) {
+            return renderContent;
+        }
+        releaseContent();
+        ParagraphRenderCache.Content cachedContent = table ? null : renderCache.take(item.getRevision());
+        if (renderCache.isValid(cachedContent)) {
+            renderContent = cachedContent;
+            renderContentCacheable = true;
+        } else {
+            renderContent = buildContent(item, positions);
+            renderContentCacheable = !table;
+        }
+        return renderContent;
+    }
+
+    private void releaseContent() {
+        if (renderContent != null && renderContentCacheable) {
+            richTextAreaSkin.getParagraphRenderCache().release(renderContent);
+        }
+        renderContent = null;
+    }
+
+    private ParagraphRenderCache.Content buildContent(Paragraph item, List<Integer> positions) {
+        var fragments = new ArrayList<Node>();
+        var backgroundIndexRanges = new ArrayList<IndexRangeColor>();
+        var length = new AtomicInteger();
+        var nonTextNodes = new AtomicInteger();
+        AtomicInteger tp = new AtomicInteger(item.getStart());
+        richTextAreaSkin.getViewModel().walkFragments((unit, decoration) -> {
+            if (decoration instanceof TextDecoration && !unit.isEmpty()) {
+                if (item.getDecoration().hasTableDecoration()) {
+                    if (unit instanceof TextUnit) {
+                        String text = unit.getText();
+                        AtomicInteger s = new AtomicInteger();
+                        IntStream.iterate(text.indexOf(TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR),
+                                        index -> index >= 0,
+                                        index -> text.indexOf(TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR, index + 1))
+                                .boxed()
+                                .forEach(i -> {
+                                    String tableText = text.substring(s.getAndSet(i + 1), i + 1);
+                                    final Text textNode = buildText(tableText, (TextDecoration) decoration);
+                                    textNode.getProperties().put(TABLE_SEPARATOR, tp.get());
+                                    fragments.add(textNode);
+                                    positions.add(tp.addAndGet(tableText.length()));
+                                });
+                        if (s.get() < text.length()) {
+                            String tableText = text.substring(s.get()).replace("\n", TextBuffer.ZERO_WIDTH_TEXT);
+                            final Text textNode = buildText(tableText, (TextDecoration) decoration);
+                            textNode.getProperties().put(TABLE_SEPARATOR, tp.getAndAdd(tableText.length()));
+                            fragments.add(textNode);
+                            if (text.substring(s.get()).contains("\n")) {
+                                positions.add(tp.get());
                             }
                         }
                     } else {
                         final Node node = buildNode(unit, (TextDecoration) decoration);
+                        node.getProperties().put(TABLE_SEPARATOR, tp.getAndIncrement());
                         fragments.add(node);
-                        String background = ((TextDecoration) decoration).getBackground();
-                        Color backgroundColor = COLOR_MAP.computeIfAbsent(background, s -> parseColorOrDefault(background, Color.TRANSPARENT));
-                        if (!Color.TRANSPARENT.equals(backgroundColor)) {
-                            backgroundIndexRanges.add(new IndexRangeColor(
-                                    length.get(), length.get() + unit.length(), backgroundColor));
+                        length.addAndGet(unit.length());
+                        if (unit instanceof EmojiUnit) {
+                            nonTextNodes.incrementAndGet();
                         }
                     }
-                    length.addAndGet(unit.length());
-                    if (unit instanceof EmojiUnit) {
-                        richTextAreaSkin.nonTextNodes.incrementAndGet();
+                } else {
+                    final Node node = buildNode(unit, (TextDecoration) decoration);
+                    fragments.add(node);
+                    String background = ((TextDecoration) decoration).getBackground();
+                    Color backgroundColor = StyleResourceCache.getShared().getColor(background, Color.TRANSPARENT);
+                    if (!Color.TRANSPARENT.equals(backgroundColor)) {
+                        backgroundIndexRanges.add(new IndexRangeColor(
+                                length.get(), length.get() + unit.length(), backgroundColor));
                     }
-                } else if (decoration instanceof ImageDecoration) {
-                    fragments.add(buildImage((ImageDecoration) decoration));
-                    length.incrementAndGet();
-                    richTextAreaSkin.nonTextNodes.incrementAndGet();
                 }
-            }, item.getStart(), item.getEnd());
-            paragraphTile.setParagraph(item, fragments, positions, backgroundIndexRanges);
-            setGraphic(paragraphTile);
-            // required: update caret and selection
-            paragraphTile.updateLayout();
-        } else {
-            // clean up listeners
-            paragraphTile.setParagraph(null, null, null, null);
-            setGraphic(null);
-        }
+                length.addAndGet(unit.length());
+                if (unit instanceof EmojiUnit) {
+                    nonTextNodes.incrementAndGet();
+                }
+            } else if (decoration instanceof ImageDecoration) {
+                fragments.add(buildImage((ImageDecoration) decoration));
+                length.incrementAndGet();
+                nonTextNodes.incrementAndGet();
+            }
+        }, item.getStart(), item.getEnd());
+        return richTextAreaSkin.getParagraphRenderCache().create(item.getRevision(), fragments, backgroundIndexRanges, nonTextNodes.get());
     }
 
     private Node buildNode(Unit unit, TextDecoration decoration) {
@@ -238,9 +278,7 @@ class RichListCell extends ListCell<Paragraph> {
             Emoji emoji = ((EmojiUnit) unit).getEmoji();
             EmojiSkinTone tone = richTextAreaSkin.getSkinnable().getSkinTone();
             double emojiSize = Math.ceil(decoration.getFontSize() * TextUtils.EMOJI_SIZE_FONT_FACTOR);
-            return TextUtils.convertUnifiedToImageNode(tone != null ?
-                    EmojiData.emojiWithTone(emoji, tone).getUnified() :
-                    emoji.getUnified(), emojiSize);
+            return EmojiImageCache.getShared().createEmojiNode(emoji, tone, emojiSize);
         } else {
             throw new RuntimeException("Error: Unit " + unit + " not supported yet");
         }
@@ -255,7 +293,7 @@ class RichListCell extends ListCell<Paragraph> {
         Objects.requireNonNull(decoration);
         Text text = new Text(Objects.requireNonNull(content).replace("\n", ""));
         String foreground = decoration.getForeground();
-        text.setFill(COLOR_MAP.computeIfAbsent(foreground, s -> parseColorOrDefault(foreground, Color.BLACK)));
+        text.setFill(StyleResourceCache.getShared().getColor(foreground, Color.BLACK));
         text.setStrikethrough(decoration.isStrikethrough());
         text.setUnderline(decoration.isUnderline());
 
@@ -269,18 +307,12 @@ class RichListCell extends ListCell<Paragraph> {
         double actualFontSize = (decoration.isSuperscript() || decoration.isSubscript() || decoration.isTransSuperscript() || decoration.isTransSubscript() ) ? decoration.getFontSize() * .72 : decoration.getFontSize();
 
         // Caching fonts, assuming their reuse, especially for default one
-        int hash = Objects.hash(
+        Font font = StyleResourceCache.getShared().getFont(
                 decoration.getFontFamily(),
                 decoration.getFontWeight(),
                 decoration.getFontPosture(),
                 actualFontSize);
 
-        Font font = richTextAreaSkin.getFontCache().computeIfAbsent(hash, h -> Font.font(
-                        decoration.getFontFamily(),
-                        decoration.getFontWeight(),
-                        decoration.getFontPosture(),
-                        actualFontSize));
-
         text.setFont(font);
         String url = decoration.getURL();
         if (url != null) {
@@ -303,18 +335,36 @@ class RichListCell extends ListCell<Paragraph> {
     }
 
     private ImageView buildImage(ImageDecoration imageDecoration) {
-        Image image = richTextAreaSkin.getImageCache().computeIfAbsent(imageDecoration.getUrl(), Image::new);
-        final ImageView imageView = new ImageView(image);
+        ImageResourceCache imageCache = ImageResourceCache.getShared();
+        String url = imageDecoration.getUrl();
+        // for now, limit the image within the content area
+        double maxWidth = richTextAreaSkin.textFlowPrefWidthProperty.get() - 10;
+        final ImageView imageView = new ImageView();
         // TODO Create resizable ImageView
         if (imageDecoration.getWidth() > -1 && imageDecoration.getHeight() > -1) {
             imageView.setFitWidth(imageDecoration.getWidth());
             imageView.setFitHeight(imageDecoration.getHeight());
         } else {
-            // for now, limit the image within the content area
-            double width = Math.min(image.getWidth(), richTextAreaSkin.textFlowPrefWidthProperty.get() - 10);
-            imageView.setFitWidth(width);
             imageView.setPreserveRatio(true);
+            imageView.imageProperty().addListener((obs, ov, image) -> {
+                if (image == null || image == imageCache.getPlaceholder()) {
+                    imageView.setFitWidth(0);
+                    return;
+                }
+                imageView.setFitWidth(Math.min(image.getWidth(), maxWidth));
+                if (image.getWidth() > maxWidth && imageCache.isWiderThan(url, maxWidth)) {
+                    // decoded at its natural size, use the image decoded at the available width once ready
+                    bindWhenLoaded(imageView, imageCache.getImage(url, -1, -1, maxWidth));
+                }
+            });
         }
+        imageView.imageProperty().addListener((obs, ov, image) -> {
+            if (ov == imageCache.getPlaceholder()) {
+                // image size changed
+                richTextAreaSkin.requestLayoutUpdate();
+            }
+        });
+        imageView.imageProperty().bind(imageCache.getImage(url, imageDecoration.getWidth(), imageDecoration.getHeight(), maxWidth));
         if (imageDecoration.getLink() != null) {
             imageView.setCursor(Cursor.HAND);
             imageView.addEventHandler(MouseEvent.MOUSE_CLICKED, e -> {
@@ -330,52 +380,35 @@ class RichListCell extends ListCell<Paragraph> {
         return imageView;
     }
 
-    void evictUnusedObjects(Set<Font> usedFonts, Set<Image> usedImages) {
-        getParagraphTile().ifPresent(tile -> tile.evictUnusedObjects(usedFonts, usedImages));
+    private static void bindWhenLoaded(ImageView imageView, ReadOnlyObjectProperty<Image> imageProperty) {
+        Image placeholder = ImageResourceCache.getShared().getPlaceholder();
+        if (imageProperty.get() != placeholder) {
+            Platform.runLater(() -> imageView.imageProperty().bind(imageProperty));
+            return;
+        }
+        // the shared property only keeps a weak reference to the listener, and the image view
+        // keeps the listener, so both can be collected if the image never loads
+        InvalidationListener[] weakListener = new InvalidationListener[1];
+        InvalidationListener listener = o -> {
+            if (imageProperty.get() != placeholder) {
+                imageProperty.removeListener(weakListener[0]);
+                imageView.getProperties().remove(LOADED_LISTENER_KEY);
+                imageView.imageProperty().bind(imageProperty);
+            }
+        };
+        weakListener[0] = new WeakInvalidationListener(listener);
+        imageView.getProperties().put(LOADED_LISTENER_KEY, listener);
+        imageProperty.addListener(weakListener[0]);
     }
 
     public void forwardDragEvent(MouseEvent e) {
         getParagraphTile().ifPresent(tile -> tile.mouseDraggedListener(e));
     }
 
-    public boolean hasCaret() {
-        return getParagraphTile()
-                .map(ParagraphTile::hasCaret)
-                .orElse(false);
-    }
-
-    public void resetCaret() {
-        getParagraphTile().ifPresent(ParagraphTile::resetCaret);
-    }
-
-    public int getNextRowPosition(double x, boolean down) {
-        return getParagraphTile()
-                .map(tile -> tile.getNextRowPosition(x, down))
-                .orElse(-1);
-    }
-
-    public int getNextTableCellPosition(boolean down) {
-        return getParagraphTile()
-                .map(tile -> tile.getNextTableCellPosition(down))
-                .orElse(-1);
-    }
-
     private Optional<ParagraphTile> getParagraphTile() {
         if (getGraphic() instanceof ParagraphTile) {
             return Optional.of((ParagraphTile) getGraphic());
         }
         return Optional.empty();
     }
-
-    private static Color parseColorOrDefault(String color, Color defaultColor) {
-        try {
-            return Color.web(color);
-        } catch (Exception e) {
-            return defaultColor;
-        }
-    }
-
-
-
-
 }
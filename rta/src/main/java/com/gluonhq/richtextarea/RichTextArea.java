@@ -31,7 +31,9 @@ import com.gluonhq.emoji.EmojiSkinTone;
 import com.gluonhq.richtextarea.action.ActionFactory;
 import com.gluonhq.richtextarea.model.Decoration;
 import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.DocumentJournal;
 import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import com.gluonhq.richtextarea.model.SearchQuery;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
@@ -136,6 +138,47 @@ public class RichTextArea extends Control {
     }
     private final BooleanProperty autoSaveProperty = new SimpleBooleanProperty(this, "autoSave");
 
+    // journalProperty
+    /**
+     * Property that enables the journal mode: when set, every change done to the document being edited is
+     * appended to the {@link DocumentJournal journal} as it happens, and full checkpoints are written
+     * periodically, so the document can be recovered after a crash with {@link DocumentJournal#recover()}.
+     *
+     * Every time a document is opened, the journal is reset with a checkpoint of that document, so a pending
+     * recovery should be done before setting the journal. By default, it is null, and journaling is disabled.
+     *
+     * @return the journal of the document, if any
+     */
+    public final ObjectProperty<DocumentJournal> journalProperty() {
+       return journalProperty;
+    }
+    public final DocumentJournal getJournal() {
+       return journalProperty.get();
+    }
+    public final void setJournal(DocumentJournal value) {
+        journalProperty.set(value);
+    }
+    private final ObjectProperty<DocumentJournal> journalProperty = new SimpleObjectProperty<>(this, "journal");
+
+    // searchQueryProperty
+    /**
+     * Property with the search query which matches are highlighted in the paragraphs that
+     * are shown, with the {@code search-highlight} style class, without modifying the
+     * document. By default, it is null, and nothing is highlighted.
+     *
+     * @return the search query, if any
+     */
+    public final ObjectProperty<SearchQuery> searchQueryProperty() {
+       return searchQueryProperty;
+    }
+    public final SearchQuery getSearchQuery() {
+       return searchQueryProperty.get();
+    }
+    public final void setSearchQuery(SearchQuery value) {
+        searchQueryProperty.set(value);
+    }
+    private final ObjectProperty<SearchQuery> searchQueryProperty = new SimpleObjectProperty<>(this, "searchQuery");
+
     // modifiedProperty
     /**
      * Indicates if the current {@link Document document} has unsaved changes or not.
@@ -416,6 +459,26 @@ public class RichTextArea extends Control {
         return getClass().getResource("rich-text-area.css").toExternalForm();
     }
 
+    /**
+     * Gets the number of requests for fonts and colors that were served from the style
+     * cache shared by all the controls
+     *
+     * @return the number of cache hits
+     */
+    public static long getStyleCacheHitCount() {
+        return StyleResourceCache.getShared().getHitCount();
+    }
+
+    /**
+     * Gets the number of requests for fonts and colors that had to be created and added
+     * to the style cache shared by all the controls
+     *
+     * @return the number of cache misses
+     */
+    public static long getStyleCacheMissCount() {
+        return StyleResourceCache.getShared().getMissCount();
+    }
+
     public static void showSimpleAlert(String header, String message) {
         Alerts.showSimpleAlert(header, message, mainStage );
     }
@@ -30,18 +30,23 @@ package com.gluonhq.richtextarea;
 import com.gluonhq.emoji.EmojiSkinTone;
 import com.gluonhq.richtextarea.model.Decoration;
 import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.DocumentJournal;
 import com.gluonhq.richtextarea.model.ImageDecoration;
 import com.gluonhq.richtextarea.model.Paragraph;
 import com.gluonhq.richtextarea.model.ParagraphDecoration;
 import com.gluonhq.richtextarea.model.PieceTable;
+import com.gluonhq.richtextarea.model.SearchQuery;
 import com.gluonhq.richtextarea.model.Table;
 import com.gluonhq.richtextarea.model.TableDecoration;
 import com.gluonhq.richtextarea.model.TextBuffer;
 import com.gluonhq.richtextarea.model.TextDecoration;
+import com.gluonhq.richtextarea.model.TextSnapshot;
 import com.gluonhq.richtextarea.model.UnitBuffer;
 import com.gluonhq.richtextarea.viewmodel.ActionCmd;
 import com.gluonhq.richtextarea.viewmodel.ActionCmdFactory;
 import com.gluonhq.richtextarea.viewmodel.RichTextAreaViewModel;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.beans.InvalidationListener;
 import javafx.beans.Observable;
@@ -59,6 +64,7 @@ import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.SortedList;
 import javafx.css.CssMetaData;
@@ -72,6 +78,7 @@ import javafx.geometry.Point2D;
 import javafx.scene.Cursor;
 import javafx.scene.Group;
 import javafx.scene.Node;
+import javafx.scene.Scene;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
@@ -101,12 +108,13 @@ import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.gluonhq.richtextarea.CharModification.*;
 import static com.gluonhq.richtextarea.CharModification.SLASH;
@@ -136,22 +144,39 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
 
     private Map<KeyCodeCombination, String> keyPressedCharMap;
+    // keyPressedCharMap, compiled for lookup by key event
+    private KeyCombinationMap<String> compiledKeyPressedCharMap;
     private Map<Character, String> keyTypedCharMap;
-    private final Map<Character, String> BASE_MAP = initializeBaseMap();
-    private final Map<KeyCodeCombination, String> ITALIC_ALT_MAP = initializeItalicAltMap();
-    private final Map<KeyCodeCombination, String> SCRIPT_ALT_MAP = initializeScriptAltMap();
-    private final Map<Character, String> ITALIC_MAP = initializeItalicMap();
-    private final Map<Character, String> SCRIPT_MAP = initializeScriptMap();
-    private final Map<Character, String> GREEK_MAP = initializeGreekMap();
-    private final Map<KeyCodeCombination, String> SANS_MAP = initializeSansMap();
-    private final Map<KeyCodeCombination, String> BLACKBOARD_MAP = initializeBlackboardMap();
-    private final Map<KeyCodeCombination, String> FRAKTUR_MAP = initializeFrakturMap();
-    private final Map<KeyCodeCombination, String> SPECIAL_CHARACTER_MAP = initializeSpecialCharacterMap();
-    private final Map<KeyCodeCombination, String> SPECIAL_WITH_ITALIC_MAP;
-    private final Map<KeyCodeCombination, String> SPECIAL_WITH_SANS_MAP;
-    private final Map<KeyCodeCombination, String> SPECIAL_WITH_SCRIPT_MAP;
-    private final Map<KeyCodeCombination, String> SPECIAL_WITH_BLACKBOARD_MAP;
-    private final Map<KeyCodeCombination, String> SPECIAL_WITH_FRAKTUR_MAP;
+
+    /**
+     * Keyboard maps, built once per process when first used and shared by all the skins
+     */
+    private static final class KeyMaps {
+        private static final Map<Character, String> BASE_MAP = initializeBaseMap();
+        private static final Map<Character, String> ITALIC_MAP = initializeItalicMap();
+        private static final Map<Character, String> SCRIPT_MAP = initializeScriptMap();
+        private static final Map<Character, String> GREEK_MAP = initializeGreekMap();
+        private static final Map<KeyCodeCombination, String> SPECIAL_CHARACTER_MAP = initializeSpecialCharacterMap();
+        private static final Map<KeyCodeCombination, String> SPECIAL_WITH_ITALIC_MAP = merge(SPECIAL_CHARACTER_MAP, initializeItalicAltMap());
+        private static final Map<KeyCodeCombination, String> SPECIAL_WITH_SANS_MAP = merge(SPECIAL_CHARACTER_MAP, initializeSansMap());
+        private static final Map<KeyCodeCombination, String> SPECIAL_WITH_SCRIPT_MAP = merge(SPECIAL_CHARACTER_MAP, initializeScriptAltMap());
+        private static final Map<KeyCodeCombination, String> SPECIAL_WITH_BLACKBOARD_MAP = merge(SPECIAL_CHARACTER_MAP, initializeBlackboardMap());
+        private static final Map<KeyCodeCombination, String> SPECIAL_WITH_FRAKTUR_MAP = merge(SPECIAL_CHARACTER_MAP, initializeFrakturMap());
+
+        // compiled key pressed maps
+        private static final Map<Map<KeyCodeCombination, String>, KeyCombinationMap<String>> COMPILED_MAPS = new IdentityHashMap<>();
+        static {
+            List.of(SPECIAL_WITH_ITALIC_MAP, SPECIAL_WITH_SANS_MAP, SPECIAL_WITH_SCRIPT_MAP,
+                    SPECIAL_WITH_BLACKBOARD_MAP, SPECIAL_WITH_FRAKTUR_MAP)
+                    .forEach(map -> COMPILED_MAPS.put(map, KeyCombinationMap.of(map)));
+        }
+
+        private static Map<KeyCodeCombination, String> merge(Map<KeyCodeCombination, String> map, Map<KeyCodeCombination, String> otherMap) {
+            Map<KeyCodeCombination, String> tempMap = new HashMap<>(map);
+            tempMap.putAll(otherMap);
+            return Collections.unmodifiableMap(tempMap);
+        }
+    }
 
     private DoubleProperty nodesWidth = new SimpleDoubleProperty();
 
@@ -162,52 +187,53 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 //    private CharModification modification = NONE;
     
     private ObjectProperty<CharModification> modification = new SimpleObjectProperty<>(CharModification.NONE);
-    private CharModMaps charModMaps = new CharModMaps();
+    private final CharModMaps charModMaps = CharModMaps.getShared();
 
     public void setMaps(KeyMapValue request) {
         switch (request) {
             case BASE: {
-                keyPressedCharMap = SPECIAL_WITH_ITALIC_MAP;
-                keyTypedCharMap = BASE_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_ITALIC_MAP;
+                keyTypedCharMap = KeyMaps.BASE_MAP;
                 break;
             }
             case BASE_AND_SCRIPT: {
-                keyPressedCharMap = SPECIAL_WITH_SCRIPT_MAP;
-                keyTypedCharMap = BASE_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_SCRIPT_MAP;
+                keyTypedCharMap = KeyMaps.BASE_MAP;
                 break;
             }
             case BASE_AND_SANS: {
-                keyPressedCharMap = SPECIAL_WITH_SANS_MAP;
-                keyTypedCharMap = BASE_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_SANS_MAP;
+                keyTypedCharMap = KeyMaps.BASE_MAP;
                 break;
             }
 
             case ITALIC_AND_SANS: {
-                keyPressedCharMap = SPECIAL_WITH_SANS_MAP;
-                keyTypedCharMap = ITALIC_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_SANS_MAP;
+                keyTypedCharMap = KeyMaps.ITALIC_MAP;
                 break;
             }
             case SCRIPT_AND_ITALIC: {
-                keyPressedCharMap = SPECIAL_WITH_ITALIC_MAP;
-                keyTypedCharMap = SCRIPT_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_ITALIC_MAP;
+                keyTypedCharMap = KeyMaps.SCRIPT_MAP;
                 break;
             }
             case SCRIPT_AND_SANS: {
-                keyPressedCharMap = SPECIAL_WITH_SANS_MAP;
-                keyTypedCharMap = SCRIPT_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_SANS_MAP;
+                keyTypedCharMap = KeyMaps.SCRIPT_MAP;
                 break;
             }
             case ITALIC_AND_BLACKBOARD: {
-                keyPressedCharMap = SPECIAL_WITH_BLACKBOARD_MAP;
-                keyTypedCharMap = ITALIC_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_BLACKBOARD_MAP;
+                keyTypedCharMap = KeyMaps.ITALIC_MAP;
                 break;
             }
             case GREEK_AND_FRAKTUR: {
-                keyPressedCharMap = SPECIAL_WITH_FRAKTUR_MAP;
-                keyTypedCharMap = GREEK_MAP;
+                keyPressedCharMap = KeyMaps.SPECIAL_WITH_FRAKTUR_MAP;
+                keyTypedCharMap = KeyMaps.GREEK_MAP;
                 break;
             }
         }
+        compiledKeyPressedCharMap = KeyMaps.COMPILED_MAPS.get(keyPressedCharMap);
     }
 
 
@@ -498,8 +524,12 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
                 return null;
             })
     );
+    private final KeyCombinationMap<ActionBuilder> compiledInputMap = KeyCombinationMap.of(INPUT_MAP);
 
     private static final Point2D DEFAULT_POINT_2D = new Point2D(-1, -1);
+    private static final double DEFAULT_FONT_SIZE = 14d;
+    // approximate average width of a character, relative to the font size
+    private static final double AVERAGE_CHAR_WIDTH_FACTOR = 0.5;
 
     private final ParagraphListView paragraphListView;
     private final SortedList<Paragraph> paragraphSortedList = new SortedList<>(viewModel.getParagraphList(), Comparator.comparing(Paragraph::getStart));
@@ -514,11 +544,68 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         e.consume();
     };
 
-    private final Map<Integer, Font> fontCache = new ConcurrentHashMap<>();
-    private final Map<String, Image> imageCache = new ConcurrentHashMap<>();
+    private final ParagraphRenderCache paragraphRenderCache = new ParagraphRenderCache();
+    private final ParagraphHeightIndex paragraphHeightIndex = new ParagraphHeightIndex(this::estimateParagraphHeight);
+    private final Map<Double, Double> lineHeightMap = new HashMap<>();
+    // snapshot of the text used to find the font sizes of the paragraph height estimates
+    private TextSnapshot estimateSnapshot;
+    private final ParagraphWidthIndex paragraphWidthIndex = new ParagraphWidthIndex();
+    private boolean nodesWidthPending;
+    private final ListChangeListener<Paragraph> paragraphListChangeListener = c -> {
+        paragraphHeightIndex.setParagraphs(paragraphSortedList);
+        if (paragraphWidthIndex.setParagraphs(paragraphSortedList)) {
+            requestNodesWidthUpdate();
+        }
+    };
+
+    // single caret blink animation, for the layer that has the caret
+    private final Timeline caretTimeline = new Timeline(
+            new KeyFrame(Duration.ZERO        , e -> setCaretVisibility(true)),
+            new KeyFrame(Duration.seconds(0.5), e -> setCaretVisibility(false)),
+            new KeyFrame(Duration.seconds(1.0))
+    );
+    private Path blinkingCaretShape;
+
+    // tile and caret shape of the layer that shows the caret, if any
+    private ParagraphTile caretOwnerTile;
+    private Path caretOwnerShape;
+    // visible tiles by paragraph range: caret and selection changes are sent only to the affected tiles
+    private final TileRangeIndex<ParagraphTile> tileRangeIndex = new TileRangeIndex<>();
+    private final ChangeListener<Number> caretPositionListener = (o, ocp, cp) -> dispatchCaretPosition(ocp.intValue(), cp.intValue());
+    private final ChangeListener<Selection> selectionListener = (o, os, selection) -> dispatchSelection(os, selection);
+    // matches of the search query, found as paragraphs are rendered
+    private final SearchMatchCache searchMatchCache = new SearchMatchCache();
+    private final ChangeListener<SearchQuery> searchQueryListener = (o, oq, query) -> updateSearchQuery(query);
     private final SmartTimer objectsCacheEvictionTimer;
 
-    private final Consumer<TextBuffer.Event> textChangeListener = e -> refreshTextFlow();
+    // set while a burst of typed keys is inserted, so the text flow is refreshed once after it
+    private boolean textRefreshSuppressed;
+    private final Consumer<TextBuffer.Event> textChangeListener = e -> {
+        if (!textRefreshSuppressed) {
+            refreshTextFlow();
+        }
+    };
+
+    private final ChangeListener<DocumentJournal> journalChangeListener = (obs, ov, nv) -> {
+        if (ov != null) {
+            ov.detach();
+        }
+        if (nv != null) {
+            nv.attach(viewModel.getTextBuffer());
+        }
+    };
+    private boolean layoutUpdatePending;
+    private final Map<Object, Runnable> pendingBackgroundUpdates = new LinkedHashMap<>();
+    private final Runnable postLayoutPulseListener = () -> {
+        flushBackgroundUpdates();
+        flushNodesWidth();
+    };
+    // typed text is buffered and inserted once per pulse, before layout, keeping one edit per key typed
+    private final List<String> pendingTypedText = new ArrayList<>();
+    private final Runnable preLayoutPulseListener = this::flushTypedText;
+    private final EventHandler<MouseEvent> flushTypedTextFilter = e -> flushTypedText();
+    private final ChangeListener<Scene> sceneChangeListener = (obs, ov, nv) -> setPulseListenerScene(nv);
+    private Scene pulseListenerScene;
     int lastValidCaretPosition = -1;
     int mouseDragStart = -1;
     int dragAndDropStart = -1;
@@ -529,6 +616,10 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     final DoubleProperty textFlowPrefWidthProperty = new SimpleDoubleProperty() {
         @Override
         protected void invalidated() {
+            // cached images are limited by the content width
+            paragraphRenderCache.clear();
+            paragraphHeightIndex.invalidate();
+            paragraphWidthIndex.clear();
             if (paragraphListView != null) {
                 Platform.runLater(paragraphListView::updateLayout);
             }
@@ -730,53 +821,10 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         }
 
         void evictUnusedObjects() {
-            Set<Font> usedFonts = new HashSet<>();
-            Set<Image> usedImages = new HashSet<>();
-            getSheet().getChildren().stream()
-                    .filter(RichListCell.class::isInstance)
-                    .map(RichListCell.class::cast)
-                    .forEach(cell -> cell.evictUnusedObjects(usedFonts, usedImages));
-
-            List<Font> cachedFonts = new ArrayList<>(getFontCache().values());
-            cachedFonts.removeAll(usedFonts);
-            if (!cachedFonts.isEmpty()) {
-                getFontCache().values().removeAll(cachedFonts);
-            }
-
-            List<Image> cachedImages = new ArrayList<>(getImageCache().values());
-            cachedImages.removeAll(usedImages);
-            if (!cachedImages.isEmpty()) {
-                getImageCache().values().removeAll(cachedImages);
-            }
-        }
-
-        int getNextRowPosition(double x, boolean down) {
-            return getSheet().getChildren().stream()
-                    .filter(RichListCell.class::isInstance)
-                    .map(RichListCell.class::cast)
-                    .filter(RichListCell::hasCaret)
-                    .mapToInt(cell -> cell.getNextRowPosition(x, down))
-                    .findFirst()
-                    .orElse(-1);
-        }
-
-        int getNextTableCellPosition(boolean down) {
-            return getSheet().getChildren().stream()
-                    .filter(RichListCell.class::isInstance)
-                    .map(RichListCell.class::cast)
-                    .filter(RichListCell::hasCaret)
-                    .mapToInt(cell -> cell.getNextTableCellPosition(down))
-                    .findFirst()
-                    .orElse(-1);
-        }
-
-        void resetCaret() {
-            getSheet().getChildren().stream()
-                    .filter(RichListCell.class::isInstance)
-                    .map(RichListCell.class::cast)
-                    .filter(RichListCell::hasCaret)
-                    .findFirst()
-                    .ifPresent(RichListCell::resetCaret);
+            // paragraphs that changed or were removed won't be shown again
+            paragraphRenderCache.retainAll(getItems().stream()
+                    .map(Paragraph::getRevision)
+                    .collect(Collectors.toSet()));
         }
 
         void updateLayout() {
@@ -805,14 +853,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         }
 
         private double computeTotalHeight() {
-            double totalHeight = 0.0;
-
-            for (int i = 0; i < this.getItems().size(); i++) {
-                Paragraph paragraph = this.getItems().get(i);
-                totalHeight += (paragraph.getParaHeight() + 1.5);
-
-                }
-            return totalHeight;
+            return paragraphHeightIndex.getTotalHeight();
         }
     }
 
@@ -846,47 +887,26 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         });
 
 
-        Map<KeyCodeCombination, String> tempMap = new HashMap();
-        tempMap.putAll(SPECIAL_CHARACTER_MAP);
-        tempMap.putAll(SANS_MAP);
-        SPECIAL_WITH_SANS_MAP = Collections.unmodifiableMap(tempMap);
-
-        Map<KeyCodeCombination, String> tempMap1 = new HashMap();
-        tempMap1.putAll(SPECIAL_CHARACTER_MAP);
-        tempMap1.putAll(BLACKBOARD_MAP);
-        SPECIAL_WITH_BLACKBOARD_MAP = Collections.unmodifiableMap(tempMap1);
-
-        Map<KeyCodeCombination, String> tempMap2 = new HashMap();
-        tempMap2.putAll(SPECIAL_CHARACTER_MAP);
-        tempMap2.putAll(FRAKTUR_MAP);
-        SPECIAL_WITH_FRAKTUR_MAP = Collections.unmodifiableMap(tempMap2);
-
-        Map<KeyCodeCombination, String> tempMap3 = new HashMap();
-        tempMap3.putAll(SPECIAL_CHARACTER_MAP);
-        tempMap3.putAll(ITALIC_ALT_MAP);
-        SPECIAL_WITH_ITALIC_MAP = Collections.unmodifiableMap(tempMap3);
-
-        Map<KeyCodeCombination, String> tempMap4 = new HashMap();
-        tempMap4.putAll(SPECIAL_CHARACTER_MAP);
-        tempMap4.putAll(SCRIPT_ALT_MAP);
-        SPECIAL_WITH_SCRIPT_MAP = Collections.unmodifiableMap(tempMap4);
-
-
         resources = ResourceBundle.getBundle("com.gluonhq.richtextarea.rich-text-area");
 
         paragraphListView = new ParagraphListView(control);
         paragraphListView.setItems(paragraphSortedList);
+        paragraphSortedList.addListener(paragraphListChangeListener);
         paragraphListView.setFocusTraversable(false);
         getChildren().add(paragraphListView);
         paragraphListView.setCellFactory(p -> new RichListCell(this));
         objectsCacheEvictionTimer = new SmartTimer(paragraphListView::evictUnusedObjects, 1000, 60000);
+        caretTimeline.setCycleCount(Timeline.INDEFINITE);
         controlPrefWidthListener = (obs, ov, nv) -> {
             refreshTextFlow();
             paragraphListView.updateLayout();
         };
 
         tableAllowedListener = (obs, ov, nv) -> viewModel.setTableAllowed(nv);
-        skinToneChangeListener = (obs, ov, nv) -> refreshTextFlow();
+        skinToneChangeListener = (obs, ov, nv) -> {
+            paragraphRenderCache.clear();
+            refreshTextFlow();
+        };
 
 
         focusListener = o -> paragraphListView.updateLayout();
@@ -925,10 +945,17 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
     @Override
     public void dispose() {
+        flushTypedText();
+        viewModel.setPendingInputHandler(null);
+        getSkinnable().removeEventFilter(MouseEvent.MOUSE_PRESSED, flushTypedTextFilter);
         viewModel.clearSelection();
         viewModel.removeChangeListener(textChangeListener);
         viewModel.documentProperty().removeListener(documentChangeListener);
         viewModel.autoSaveProperty().unbind();
+        getSkinnable().journalProperty().removeListener(journalChangeListener);
+        if (getSkinnable().getJournal() != null) {
+            getSkinnable().getJournal().detach();
+        }
         lastValidCaretPosition = -1;
         promptNode.textProperty().unbind();
         promptNode.fillProperty().unbind();
@@ -940,6 +967,19 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         getSkinnable().focusedProperty().removeListener(focusListener);
         getSkinnable().removeEventHandler(DragEvent.ANY, dndHandler);
         getSkinnable().skinToneProperty().removeListener(skinToneChangeListener);
+        objectsCacheEvictionTimer.pause();
+        caretTimeline.stop();
+        blinkingCaretShape = null;
+        getSkinnable().sceneProperty().removeListener(sceneChangeListener);
+        viewModel.caretPositionProperty().removeListener(caretPositionListener);
+        viewModel.selectionProperty().removeListener(selectionListener);
+        getSkinnable().searchQueryProperty().removeListener(searchQueryListener);
+        searchMatchCache.setQuery(null);
+        setPulseListenerScene(null);
+        pendingBackgroundUpdates.clear();
+        paragraphRenderCache.clear();
+        paragraphSortedList.removeListener(paragraphListChangeListener);
+        estimateSnapshot = null;
         contextMenu.getItems().clear();
         tableCellContextMenuItems = null;
         tableContextMenuItems = null;
@@ -952,12 +992,276 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         return viewModel;
     }
 
-    Map<Integer, Font> getFontCache() {
-        return fontCache;
+    ParagraphRenderCache getParagraphRenderCache() {
+        return paragraphRenderCache;
     }
 
-    Map<String, Image> getImageCache() {
-        return imageCache;
+    ParagraphHeightIndex getParagraphHeightIndex() {
+        return paragraphHeightIndex;
+    }
+
+    /**
+     * Estimates the height of a paragraph that hasn't been rendered yet, from
+     * its font size, its length and the content width
+     */
+    private double estimateParagraphHeight(Paragraph paragraph) {
+        ParagraphDecoration decoration = paragraph.getDecoration();
+        double fontSize = DEFAULT_FONT_SIZE;
+        // a snapshot per text revision finds the decoration in O(log n), instead of walking the pieces
+        TextBuffer textBuffer = viewModel.getTextBuffer();
+        if (estimateSnapshot == null || estimateSnapshot.getRevision() != textBuffer.getRevision()) {
+            estimateSnapshot = textBuffer.getSnapshot();
+        }
+        Decoration textDecoration = estimateSnapshot.getDecorationAt(Math.min(paragraph.getStart(), estimateSnapshot.getTextLength() - 1));
+        if (textDecoration instanceof TextDecoration) {
+            fontSize = ((TextDecoration) textDecoration).getFontSize();
+        }
+        double lineHeight = lineHeightMap.computeIfAbsent(fontSize,
+                size -> Tools.computeStringHeight(StyleResourceCache.getShared().getFont(null, null, null, size), "X"));
+        int lines = 1;
+        if (decoration.hasTableDecoration()) {
+            lines = decoration.getTableDecoration().getRows();
+        } else {
+            double width = textFlowPrefWidthProperty.get() - decoration.getLeftInset() - decoration.getRightInset();
+            if (width > 0) {
+                int length = paragraph.getEnd() - paragraph.getStart();
+                lines = Math.max(1, (int) Math.ceil(length * fontSize * AVERAGE_CHAR_WIDTH_FACTOR / width));
+            }
+        }
+        return decoration.getTopInset() + decoration.getBottomInset() + lines * lineHeight + (lines - 1) * decoration.getSpacing() + 2;
+    }
+
+    /**
+     * Registers the text range shown by a tile, so it gets the caret and selection changes
+     * that affect it
+     * @param tile the paragraph tile
+     * @param paragraph the paragraph of the tile, or null if the tile is empty
+     */
+    void setTileParagraph(ParagraphTile tile, Paragraph paragraph) {
+        if (paragraph == null) {
+            tileRangeIndex.remove(tile);
+        } else {
+            // the end is included, as the last paragraph can have the caret at its end
+            tileRangeIndex.put(tile, paragraph.getStart(), paragraph.getEnd());
+        }
+    }
+
+    /**
+     * Gets the matches of the search query in a paragraph
+     * @param paragraph the paragraph
+     * @return the matches, as pairs of start and end offsets from the paragraph start
+     */
+    int[] getSearchMatches(Paragraph paragraph) {
+        return searchMatchCache.getMatches(paragraph, viewModel.getTextBuffer());
+    }
+
+    // only the tiles that are shown are searched again, other paragraphs are searched when rendered
+    private void updateSearchQuery(SearchQuery query) {
+        if (searchMatchCache.setQuery(query)) {
+            tileRangeIndex.getItems(0, Integer.MAX_VALUE).forEach(ParagraphTile::updateSearchHighlights);
+        }
+    }
+
+    private void dispatchCaretPosition(int oldCaretPosition, int caretPosition) {
+        Set<ParagraphTile> tiles = new LinkedHashSet<>();
+        tileRangeIndex.collect(oldCaretPosition, oldCaretPosition, tiles);
+        tileRangeIndex.collect(caretPosition, caretPosition, tiles);
+        tiles.forEach(tile -> tile.updateCaretPosition(caretPosition));
+    }
+
+    private void dispatchSelection(Selection oldSelection, Selection selection) {
+        Set<ParagraphTile> tiles = new LinkedHashSet<>();
+        boolean oldDefined = oldSelection != null && oldSelection.isDefined();
+        boolean defined = selection != null && selection.isDefined();
+        if (oldDefined && defined) {
+            // only the tiles at the moved ends of the selection change
+            tileRangeIndex.collect(Math.min(oldSelection.getStart(), selection.getStart()),
+                    Math.max(oldSelection.getStart(), selection.getStart()), tiles);
+            tileRangeIndex.collect(Math.min(oldSelection.getEnd(), selection.getEnd()),
+                    Math.max(oldSelection.getEnd(), selection.getEnd()), tiles);
+        } else {
+            if (oldDefined) {
+                tileRangeIndex.collect(oldSelection.getStart(), oldSelection.getEnd(), tiles);
+            }
+            if (defined) {
+                tileRangeIndex.collect(selection.getStart(), selection.getEnd(), tiles);
+            }
+        }
+        tiles.forEach(tile -> tile.updateSelection(selection));
+    }
+
+    /**
+     * Sets the layer that shows the caret
+     * @param tile the paragraph tile of the layer
+     * @param caretShape the caret shape of the layer
+     */
+    void setCaretOwner(ParagraphTile tile, Path caretShape) {
+        caretOwnerTile = tile;
+        caretOwnerShape = caretShape;
+    }
+
+    /**
+     * Releases the layer that showed the caret, if it is the given one
+     * @param caretShape the caret shape of the layer
+     * @return true if the layer had the caret
+     */
+    boolean releaseCaretOwner(Path caretShape) {
+        if (caretShape == caretOwnerShape) {
+            caretOwnerTile = null;
+            caretOwnerShape = null;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gives the caret to another tile that shows it, after a tile that owned it was reset.
+     * This happens when the list view measures a paragraph with a cell that is then released,
+     * while the visible cell of the same paragraph still shows the caret
+     * @param tile the paragraph tile that was reset
+     */
+    void restoreCaretOwner(ParagraphTile tile) {
+        int caretPosition = viewModel.getCaretPosition();
+        Set<ParagraphTile> tiles = new LinkedHashSet<>();
+        tileRangeIndex.collect(caretPosition, caretPosition, tiles);
+        tiles.remove(tile);
+        for (ParagraphTile t : tiles) {
+            t.updateCaretPosition(caretPosition);
+            if (caretOwnerShape != null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Starts blinking the caret of a layer, or keeps blinking it if it already had the caret
+     * @param caretShape the caret shape of the layer
+     */
+    void startCaretBlink(Path caretShape) {
+        if (caretShape != blinkingCaretShape) {
+            caretTimeline.stop();
+            if (blinkingCaretShape != null) {
+                blinkingCaretShape.setOpacity(1);
+            }
+            blinkingCaretShape = caretShape;
+        }
+        caretTimeline.play();
+    }
+
+    /**
+     * Stops blinking the caret of a layer, if it has the caret
+     * @param caretShape the caret shape of the layer
+     */
+    void stopCaretBlink(Path caretShape) {
+        if (caretShape != null && caretShape == blinkingCaretShape) {
+            caretTimeline.stop();
+            blinkingCaretShape.setOpacity(1);
+            blinkingCaretShape = null;
+        }
+    }
+
+    private void setCaretVisibility(boolean on) {
+        if (blinkingCaretShape != null && !blinkingCaretShape.getElements().isEmpty()) {
+            // Opacity is used since we don't want the changing caret bounds to affect the layout
+            // Otherwise text appears to be jumping
+            blinkingCaretShape.setOpacity(on ? 1 : 0);
+        }
+    }
+
+    boolean hasParagraphWidth(Paragraph paragraph) {
+        return paragraphWidthIndex.hasWidth(paragraph);
+    }
+
+    /**
+     * Sets the width of the content of a paragraph. The maximum width of all the
+     * paragraphs is published to the view model at most once per pulse
+     * @param paragraph the paragraph
+     * @param width the sum of the widths of its nodes
+     */
+    void setParagraphWidth(Paragraph paragraph, double width) {
+        if (paragraphWidthIndex.setWidth(paragraph, width)) {
+            requestNodesWidthUpdate();
+        }
+    }
+
+    private void requestNodesWidthUpdate() {
+        if (nodesWidthPending) {
+            return;
+        }
+        nodesWidthPending = true;
+        if (pulseListenerScene != null) {
+            Platform.requestNextPulse();
+        } else {
+            Platform.runLater(this::flushNodesWidth);
+        }
+    }
+
+    private void flushNodesWidth() {
+        if (nodesWidthPending) {
+            nodesWidthPending = false;
+            viewModel.setNodesWidth(paragraphWidthIndex.getMaxWidth());
+        }
+    }
+
+    /**
+     * Requests an update of the background of a layer, that will run after the
+     * next layout pass. Requests are collected and run once per pulse, and only the
+     * latest request of each owner is kept.
+     * @param owner the layer that requests the update
+     * @param update the update
+     */
+    void requestBackgroundUpdate(Object owner, Runnable update) {
+        boolean first = pendingBackgroundUpdates.isEmpty();
+        pendingBackgroundUpdates.put(owner, update);
+        if (pulseListenerScene != null) {
+            Platform.requestNextPulse();
+        } else if (first) {
+            Platform.runLater(this::flushBackgroundUpdates);
+        }
+    }
+
+    void cancelBackgroundUpdate(Object owner) {
+        pendingBackgroundUpdates.remove(owner);
+    }
+
+    private void flushBackgroundUpdates() {
+        if (pendingBackgroundUpdates.isEmpty()) {
+            return;
+        }
+        List<Runnable> updates = new ArrayList<>(pendingBackgroundUpdates.values());
+        pendingBackgroundUpdates.clear();
+        updates.forEach(Runnable::run);
+    }
+
+    private void setPulseListenerScene(Scene scene) {
+        if (pulseListenerScene != null) {
+            // keys typed before leaving the scene would wait for a pulse that doesn't come
+            flushTypedText();
+            pulseListenerScene.removePreLayoutPulseListener(preLayoutPulseListener);
+            pulseListenerScene.removePostLayoutPulseListener(postLayoutPulseListener);
+        }
+        pulseListenerScene = scene;
+        if (scene != null) {
+            scene.addPreLayoutPulseListener(preLayoutPulseListener);
+            scene.addPostLayoutPulseListener(postLayoutPulseListener);
+            if (!pendingBackgroundUpdates.isEmpty() || nodesWidthPending || !pendingTypedText.isEmpty()) {
+                Platform.requestNextPulse();
+            }
+        }
+    }
+
+    /**
+     * Requests an update of the cells layout, at most once per pulse,
+     * e.g. after an image has been loaded
+     */
+    void requestLayoutUpdate() {
+        if (!layoutUpdatePending) {
+            layoutUpdatePending = true;
+            Platform.runLater(() -> {
+                layoutUpdatePending = false;
+                paragraphListView.updateLayout();
+            });
+        }
     }
 
     /// PRIVATE METHODS /////////////////////////////////////////////////////////
@@ -975,6 +1279,10 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         viewModel.setDocument(document);
         viewModel.documentProperty().addListener(documentChangeListener);
         viewModel.autoSaveProperty().bind(getSkinnable().autoSaveProperty());
+        if (getSkinnable().getJournal() != null) {
+            getSkinnable().getJournal().attach(viewModel.getTextBuffer());
+        }
+        getSkinnable().journalProperty().addListener(journalChangeListener);
         promptNode.textProperty().bind(getSkinnable().promptTextProperty());
         promptNode.fillProperty().bind(promptTextFillProperty());
 
@@ -989,6 +1297,14 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         getSkinnable().focusedProperty().addListener(focusListener);
         getSkinnable().addEventHandler(DragEvent.ANY, dndHandler);
         getSkinnable().skinToneProperty().addListener(skinToneChangeListener);
+        getSkinnable().sceneProperty().addListener(sceneChangeListener);
+        getSkinnable().addEventFilter(MouseEvent.MOUSE_PRESSED, flushTypedTextFilter);
+        viewModel.setPendingInputHandler(this::flushTypedText);
+        viewModel.caretPositionProperty().addListener(caretPositionListener);
+        viewModel.selectionProperty().addListener(selectionListener);
+        getSkinnable().searchQueryProperty().addListener(searchQueryListener);
+        searchMatchCache.setQuery(getSkinnable().getSearchQuery());
+        setPulseListenerScene(getSkinnable().getScene());
         refreshTextFlow();
         requestLayout();
         editableChangeListener(null); // sets up all related listeners
@@ -1010,7 +1326,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         Decoration decorationAtCaret = viewModel.getDecorationAtCaret();
         if (decorationAtCaret instanceof TextDecoration) {
             TextDecoration textDecoration = (TextDecoration) decorationAtCaret;
-            return Font.font(
+            return StyleResourceCache.getShared().getFont(
                     textDecoration.getFontFamily(),
                     textDecoration.getFontWeight(),
                     textDecoration.getFontPosture(),
@@ -1077,11 +1393,8 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     }
 
     private Optional<Path> caret() {
-        return paragraphListView.lookupAll(".caret").stream()
-                .filter(Path.class::isInstance)
-                .map(Path.class::cast)
-                .filter(path -> !path.getElements().isEmpty())
-                .findFirst();
+        return Optional.ofNullable(caretOwnerShape)
+                .filter(path -> !path.getElements().isEmpty());
     }
 
     // So far the only way to find prev/next row location is to use the size of the caret,
@@ -1091,27 +1404,28 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         ObservableList<Paragraph> items = paragraphListView.getItems();
         int caretPosition = viewModel.getCaretPosition();
         int nextRowPosition = Math.min(viewModel.getTextLength(),
-                paragraphListView.getNextRowPosition(x, down != null && down));
+                caretOwnerTile != null ? caretOwnerTile.getNextRowPosition(x, down != null && down) : -1);
         // if the caret is at the top or bottom of the paragraph:
         if (down != null && ((down && nextRowPosition <= caretPosition) ||
                 (!down && nextRowPosition >= caretPosition))) {
-            int paragraphWithCaretIndex = items.stream()
-                    .filter(p -> p.getStart() <= caretPosition &&
-                            caretPosition < (p.equals(getLastParagraph()) ? p.getEnd() + 1 : p.getEnd()))
-                    .mapToInt(items::indexOf)
-                    .findFirst()
-                    .orElse(-1);
+            int paragraphWithCaretIndex = RichTextAreaViewModel.getParagraphIndex(items, caretPosition);
+            if (paragraphWithCaretIndex >= 0) {
+                Paragraph p = items.get(paragraphWithCaretIndex);
+                if (caretPosition >= (p.equals(getLastParagraph()) ? p.getEnd() + 1 : p.getEnd())) {
+                    paragraphWithCaretIndex = -1;
+                }
+            }
             if (down) {
                 // move to beginning of next paragraph or end
                 int nextIndex = Math.min(items.size() - 1, paragraphWithCaretIndex + 1);
                 Paragraph nextParagraph = items.get(nextIndex);
-                return items.indexOf(nextParagraph) != paragraphWithCaretIndex ?
+                return nextIndex != paragraphWithCaretIndex ?
                         nextParagraph.getStart() : viewModel.getTextLength();
             } else {
                 // move to end of previous paragraph or home
                 int prevIndex = Math.max(0, paragraphWithCaretIndex - 1);
                 Paragraph prevParagraph = items.get(prevIndex);
-                return items.indexOf(prevParagraph) != paragraphWithCaretIndex ?
+                return prevIndex != paragraphWithCaretIndex ?
                         Math.max(0, prevParagraph.getEnd() - 1) : 0;
             }
         }
@@ -1120,7 +1434,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
     private int getNextTableCellPosition(Boolean down) {
         return Math.min(viewModel.getTextLength(),
-                paragraphListView.getNextTableCellPosition(down != null && down));
+                caretOwnerTile != null ? caretOwnerTile.getNextTableCellPosition(down != null && down) : -1);
     }
 
     private static boolean isPrintableChar(char c) {
@@ -1138,30 +1452,30 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     }
 
     private void execute(ActionCmd action) {
-        Objects.requireNonNull(action).apply(viewModel);
+        Objects.requireNonNull(action);
+        flushTypedText();
+        action.apply(viewModel);
     }
 
     private void keyPressedListener(KeyEvent e) {
         //Print character assigned to key
-        for (KeyCombination kc : keyPressedCharMap.keySet()) {
-            if (kc.match(e)) {
-                String text = getTypedCharModification(keyPressedCharMap.get(kc));
-                sendKeyboardContent(text);
-                e.consume();
-                return;
-            }
+        String charText = compiledKeyPressedCharMap.get(e);
+        if (charText != null) {
+            String text = getTypedCharModification(charText);
+            sendKeyboardContent(text);
+            e.consume();
+            return;
         }
         // Find an applicable action and execute it if found
-        for (KeyCombination kc : INPUT_MAP.keySet()) {
-            if (kc.match(e)) {
-                ActionBuilder actionBuilder = INPUT_MAP.get(kc);
-                ActionCmd actionCmd = actionBuilder.apply(e);
-                if (actionCmd != null) {
-                    execute(actionCmd);
-                }
-                e.consume();
-                return;
+        ActionBuilder actionBuilder = compiledInputMap.get(e);
+        if (actionBuilder != null) {
+            // the action is built and applied after the typed text
+            flushTypedText();
+            ActionCmd actionCmd = actionBuilder.apply(e);
+            if (actionCmd != null) {
+                execute(actionCmd);
             }
+            e.consume();
         }
     }
 
@@ -1169,17 +1483,17 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         if (e.isAltDown() || e.isShortcutDown()) return;
         String text;
         //Print character mapped to key
-        for (Character key : keyTypedCharMap.keySet()) {
-            boolean test = Character.toString(key).equals(e.getCharacter());
-            if (test) {
-                text = getTypedCharModification(keyTypedCharMap.get(key));
-                sendKeyboardContent(text);
-                e.consume();
-                return;
-            }
+        String character = e.getCharacter();
+        String charText = character.length() == 1 ? keyTypedCharMap.get(character.charAt(0)) : null;
+        if (charText != null) {
+            text = getTypedCharModification(charText);
+            sendKeyboardContent(text);
+            e.consume();
+            return;
         }
         if (isCharOnly(e)) {
             if ("\t".equals(e.getCharacter())) {
+                flushTypedText();
                 ParagraphDecoration decoration = viewModel.getDecorationAtParagraph();
                 if (decoration != null &&
                     (decoration.getGraphicType() != ParagraphDecoration.GraphicType.NONE || decoration.hasTableDecoration())) {
@@ -1196,14 +1510,41 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
     }
 
     private void sendKeyboardContent(String s) {
-        paragraphListView.resetCaret();
-        if (viewModel.getSelection().isDefined()) {
-            execute(ACTION_CMD_FACTORY.replaceText(s));
-        } else {
-            execute(ACTION_CMD_FACTORY.insertText(s));
+        stopCaretBlink(caretOwnerShape);
+        boolean wasEmpty = pendingTypedText.isEmpty();
+        pendingTypedText.add(s);
+        if (pulseListenerScene == null) {
+            flushTypedText();
+        } else if (wasEmpty) {
+            Platform.requestNextPulse();
         }
     }
 
+    /**
+     * Inserts the text typed since the last pulse, with one edit per key typed, so undo
+     * doesn't depend on the typing speed, and refreshes the text flow once for all of them
+     */
+    private void flushTypedText() {
+        if (pendingTypedText.isEmpty()) {
+            return;
+        }
+        List<String> typedText = new ArrayList<>(pendingTypedText);
+        pendingTypedText.clear();
+        textRefreshSuppressed = true;
+        try {
+            for (String text : typedText) {
+                if (viewModel.getSelection().isDefined()) {
+                    ACTION_CMD_FACTORY.replaceText(text).apply(viewModel);
+                } else {
+                    ACTION_CMD_FACTORY.insertText(text).apply(viewModel);
+                }
+            }
+        } finally {
+            textRefreshSuppressed = false;
+        }
+        refreshTextFlow();
+    }
+
 
     /*
      * Get modified string and reset the modification flag
@@ -1400,7 +1741,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         return getClassCssMetaData();
     }
 
-    private Map<Character, String> initializeBaseMap() {
+    private static Map<Character, String> initializeBaseMap() {
         return Map.ofEntries(
                 entry('a', "a"),
                 entry('b', "b"),
@@ -1500,7 +1841,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
     }
 
-    private Map<KeyCodeCombination, String> initializeItalicAltMap() {
+    private static Map<KeyCodeCombination, String> initializeItalicAltMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.A, KeyCombination.ALT_DOWN), "\ud835\udc4e"),
                 entry(new KeyCodeCombination(KeyCode.B, KeyCombination.ALT_DOWN), "\ud835\udc4f"),
@@ -1569,7 +1910,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         );
     }
 
-    private Map<Character, String> initializeItalicMap() {
+    private static Map<Character, String> initializeItalicMap() {
         return Map.ofEntries(
                 entry('a', "\ud835\udc4e"),
                 entry('b', "\ud835\udc4f"),
@@ -1668,7 +2009,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         );
     }
 
-    private Map<KeyCodeCombination, String> initializeScriptAltMap() {
+    private static Map<KeyCodeCombination, String> initializeScriptAltMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.A, KeyCombination.ALT_DOWN), "\ud835\udcb6"),
 
@@ -1743,7 +2084,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
                 );
     }
 
-    private Map<Character, String> initializeScriptMap() {
+    private static Map<Character, String> initializeScriptMap() {
         return Map.ofEntries(
                 entry('a', "\ud835\udcb6"),
                 entry('b', "\ud835\udcb7"),
@@ -1844,7 +2185,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
 
 
-    private Map<Character, String> initializeGreekMap() {
+    private static Map<Character, String> initializeGreekMap() {
         return Map.ofEntries(
                 entry('a', "\u03b1"),
                 entry('A', "\u0391"),
@@ -1943,7 +2284,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         );
     }
 
-    private Map<KeyCodeCombination, String> initializeSansMap() {
+    private static Map<KeyCodeCombination, String> initializeSansMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.A, KeyCombination.ALT_DOWN), "\ud835\uddba"),
                 entry(new KeyCodeCombination(KeyCode.B, KeyCombination.ALT_DOWN), "\ud835\uddbb"),
@@ -2011,7 +2352,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
 
     }
 
-    private Map<KeyCodeCombination, String> initializeFrakturMap() {
+    private static Map<KeyCodeCombination, String> initializeFrakturMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.A, KeyCombination.ALT_DOWN), "\ud835\udd1e"),
                 entry(new KeyCodeCombination(KeyCode.B, KeyCombination.ALT_DOWN), "\ud835\udd1f"),
@@ -2079,7 +2420,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         );
     }
 
-    private Map<KeyCodeCombination, String> initializeBlackboardMap() {
+    private static Map<KeyCodeCombination, String> initializeBlackboardMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.A, KeyCombination.ALT_DOWN), "\uf893"),
                 entry(new KeyCodeCombination(KeyCode.B, KeyCombination.ALT_DOWN), "\uf894"),
@@ -2146,7 +2487,7 @@ public class RichTextAreaSkin extends SkinBase<RichTextArea> {
         );
     }
 
-    private Map<KeyCodeCombination, String> initializeSpecialCharacterMap() {
+    private static Map<KeyCodeCombination, String> initializeSpecialCharacterMap() {
         return Map.ofEntries(
                 entry(new KeyCodeCombination(KeyCode.BACK_QUOTE, KeyCombination.ALT_DOWN), "\u00ac"),                                                             //hammer
                 entry(new KeyCodeCombination(KeyCode.MINUS, KeyCombination.ALT_DOWN), "\u25b3"),                                                                  //meta caret
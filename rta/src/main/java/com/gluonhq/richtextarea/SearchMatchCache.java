@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.SearchQuery;
+import com.gluonhq.richtextarea.model.TextBuffer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache of the matches of a search query in the paragraphs of the control,
+ * keyed by the paragraph content revision. Matches are found only for the paragraphs
+ * that are requested, as they are rendered, and are kept while their content doesn't
+ * change, even if they move. Matches don't span paragraphs.
+ */
+class SearchMatchCache {
+
+    static final int DEFAULT_MAX_PARAGRAPHS = 1000;
+    private static final int[] NO_MATCHES = new int[0];
+
+    private final Map<Long, int[]> matchMap;
+    private SearchQuery query;
+    // text of the last revision of the buffer that was searched
+    private CharSequence text;
+    private long textRevision = -1;
+
+    SearchMatchCache() {
+        this(DEFAULT_MAX_PARAGRAPHS);
+    }
+
+    SearchMatchCache(int maxParagraphs) {
+        if (maxParagraphs < 0) {
+            throw new IllegalArgumentException("Max paragraphs " + maxParagraphs + " can't be negative");
+        }
+        this.matchMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > maxParagraphs;
+            }
+        };
+    }
+
+    SearchQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Sets the search query, and removes the matches of the previous one
+     * @param query the search query, or null
+     * @return true if the query changed
+     */
+    boolean setQuery(SearchQuery query) {
+        if (Objects.equals(this.query, query)) {
+            return false;
+        }
+        this.query = query;
+        clear();
+        return true;
+    }
+
+    /**
+     * Gets the matches of the query in a paragraph, finding them if they are not cached
+     * @param paragraph a paragraph of the text buffer
+     * @param textBuffer the text buffer
+     * @return the matches, as pairs of start and end offsets from the paragraph start,
+     * or an empty array if there is no query
+     */
+    int[] getMatches(Paragraph paragraph, TextBuffer textBuffer) {
+        if (query == null) {
+            return NO_MATCHES;
+        }
+        int[] matches = matchMap.get(paragraph.getRevision());
+        if (matches == null) {
+            if (text == null || textRevision != textBuffer.getRevision()) {
+                text = textBuffer.getCharSequence();
+                textRevision = textBuffer.getRevision();
+            }
+            int start = Math.min(paragraph.getStart(), text.length());
+            List<Selection> selections = query.findAll(text, start, Math.max(start, Math.min(paragraph.getEnd(), text.length())));
+            matches = selections.isEmpty() ? NO_MATCHES : new int[selections.size() * 2];
+            for (int i = 0; i < selections.size(); i++) {
+                matches[2 * i] = selections.get(i).getStart() - start;
+                matches[2 * i + 1] = selections.get(i).getEnd() - start;
+            }
+            matchMap.put(paragraph.getRevision(), matches);
+        }
+        return matches;
+    }
+
+    void clear() {
+        matchMap.clear();
+        text = null;
+        textRevision = -1;
+    }
+
+    int size() {
+        return matchMap.size();
+    }
+}
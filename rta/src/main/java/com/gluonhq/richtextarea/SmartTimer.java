@@ -27,13 +27,25 @@
  */
 package com.gluonhq.richtextarea;
 
+import javafx.application.Platform;
+
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs a task periodically on the JavaFX Application thread, after an initial delay.
+ * All the timers share a single daemon scheduler thread, so pausing and starting
+ * a timer only cancels and schedules its task.
+ */
 class SmartTimer {
 
-    private Timer timer;
+    private static ScheduledThreadPoolExecutor scheduler;
+
+    private ScheduledFuture<?> future;
+    // increases with every start, so ticks posted before a pause are discarded after a new start
+    private long generation;
     private final Runnable task;
     private final long delay;
     private final long period;
@@ -44,25 +56,40 @@ class SmartTimer {
         this.period = period;
     }
 
-    public void pause() {
-        if ( timer != null ) {
-            timer.cancel();
-            timer = null;
+    public synchronized void pause() {
+        if ( future != null ) {
+            future.cancel(false);
+            future = null;
         }
     }
 
-    public void start( ) {
-        if ( timer == null ) {
-            timer = new Timer(true);
-            TimerTask timerTask = new TimerTask() {
-                @Override
-                public void run() {
-                    task.run();
-                }
-            };
-            timer.scheduleAtFixedRate( timerTask, delay, period);
+    public synchronized void start( ) {
+        if ( future == null ) {
+            long taskGeneration = ++generation;
+            future = getScheduler().scheduleAtFixedRate(() -> Platform.runLater(() -> runTask(taskGeneration)),
+                    delay, period, TimeUnit.MILLISECONDS);
         }
     }
 
+    private void runTask(long taskGeneration) {
+        synchronized (this) {
+            if (future == null || taskGeneration != generation) {
+                // paused after the task was posted
+                return;
+            }
+        }
+        task.run();
+    }
 
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "RichTextArea-SmartTimer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        return scheduler;
+    }
 }
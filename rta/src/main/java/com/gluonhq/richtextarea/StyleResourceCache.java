@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Cache of the fonts and colors used to render the text decorations, shared by
+ * all the controls of the application. Resources are keyed by their full value,
+ * and the least recently used ones are evicted when there are more than a
+ * given number of entries. Nodes keep their own references, so evicted
+ * resources remain valid for them.
+ */
+final class StyleResourceCache {
+
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private static final StyleResourceCache SHARED = new StyleResourceCache(DEFAULT_MAX_ENTRIES);
+
+    private final Map<FontKey, Font> fontMap;
+    private final Map<String, Optional<Color>> colorMap;
+    private long hitCount;
+    private long missCount;
+
+    StyleResourceCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries " + maxEntries + " should be positive");
+        }
+        fontMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<FontKey, Font> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        colorMap = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Optional<Color>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the cache shared by all the controls
+     * @return the shared cache
+     */
+    static StyleResourceCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Gets a font with the given family, weight, posture and size
+     */
+    synchronized Font getFont(String family, FontWeight weight, FontPosture posture, double size) {
+        FontKey key = new FontKey(family, weight, posture, size);
+        Font font = fontMap.get(key);
+        if (font != null) {
+            hitCount++;
+            return font;
+        }
+        missCount++;
+        font = Font.font(family, weight, posture, size);
+        fontMap.put(key, font);
+        return font;
+    }
+
+    /**
+     * Gets the color parsed from a web color string
+     * @param color any string value that can be parsed with {@link Color#web(String)}
+     * @param defaultColor the color returned when the value can't be parsed
+     * @return the parsed color, or the default color
+     */
+    synchronized Color getColor(String color, Color defaultColor) {
+        if (color == null) {
+            return defaultColor;
+        }
+        Optional<Color> parsedColor = colorMap.get(color);
+        if (parsedColor != null) {
+            hitCount++;
+        } else {
+            missCount++;
+            parsedColor = parseColor(color);
+            colorMap.put(color, parsedColor);
+        }
+        return parsedColor.orElse(defaultColor);
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized int size() {
+        return fontMap.size() + colorMap.size();
+    }
+
+    synchronized void clear() {
+        fontMap.clear();
+        colorMap.clear();
+    }
+
+    private static Optional<Color> parseColor(String color) {
+        try {
+            return Optional.of(Color.web(color));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private static final class FontKey {
+
+        private final String family;
+        private final FontWeight weight;
+        private final FontPosture posture;
+        private final double size;
+
+        FontKey(String family, FontWeight weight, FontPosture posture, double size) {
+            this.family = family;
+            this.weight = weight;
+            this.posture = posture;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FontKey fontKey = (FontKey) o;
+            return Double.compare(fontKey.size, size) == 0 &&
+                    Objects.equals(family, fontKey.family) &&
+                    weight == fontKey.weight &&
+                    posture == fontKey.posture;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(family, weight, posture, size);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of items, like the visible paragraph tiles, by the text range they show.
+ * Items are kept by range start, so the items intersecting a given range are
+ * found in O(log n + k). Several items can share a start, like the visible tile
+ * and the measuring tile of the same paragraph.
+ * @param <T> the type of the items
+ */
+class TileRangeIndex<T> {
+
+    private final TreeMap<Integer, Set<T>> itemsByStart = new TreeMap<>();
+    private final Map<T, int[]> rangeMap = new IdentityHashMap<>();
+
+    /**
+     * Adds or moves an item to the given range
+     * @param item the item
+     * @param start the start of the range
+     * @param end the end of the range, inclusive
+     */
+    void put(T item, int start, int end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + ", " + end);
+        }
+        remove(item);
+        itemsByStart.computeIfAbsent(start, s -> Collections.newSetFromMap(new IdentityHashMap<>())).add(item);
+        rangeMap.put(item, new int[] {start, end});
+    }
+
+    /**
+     * Removes an item from the index
+     * @param item the item
+     */
+    void remove(T item) {
+        int[] range = rangeMap.remove(item);
+        if (range != null) {
+            Set<T> startItems = itemsByStart.get(range[0]);
+            startItems.remove(item);
+            if (startItems.isEmpty()) {
+                itemsByStart.remove(range[0]);
+            }
+        }
+    }
+
+    /**
+     * Adds to the set the items which range intersects the given one
+     * @param from the start of the range
+     * @param to the end of the range, inclusive
+     * @param items the set where items are added
+     */
+    void collect(int from, int to, Set<T> items) {
+        if (to < from) {
+            return;
+        }
+        Integer first = itemsByStart.floorKey(from);
+        for (Set<T> startItems : itemsByStart.subMap(first == null ? from : first, true, to, true).values()) {
+            for (T item : startItems) {
+                if (rangeMap.get(item)[1] >= from) {
+                    items.add(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the items which range intersects the given one, by range start
+     * @param from the start of the range
+     * @param to the end of the range, inclusive
+     * @return a set of items
+     */
+    Set<T> getItems(int from, int to) {
+        Set<T> items = new LinkedHashSet<>();
+        collect(from, to, items);
+        return items;
+    }
+
+    int size() {
+        return rangeMap.size();
+    }
+
+    void clear() {
+        itemsByStart.clear();
+        rangeMap.clear();
+    }
+}
@@ -33,6 +33,7 @@ import com.gluonhq.richtextarea.Selection;
 import com.gluonhq.richtextarea.model.Block;
 import com.gluonhq.richtextarea.model.Decoration;
 import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.SearchQuery;
 import com.gluonhq.richtextarea.model.TableDecoration;
 import com.gluonhq.richtextarea.viewmodel.ActionCmdFactory;
 
@@ -205,6 +206,14 @@ public class ActionFactory {
         return new BasicAction(control, action -> ACTION_CMD_FACTORY.decorate(decorations));
     }
 
+    public Action find(SearchQuery query) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.find(query));
+    }
+
+    public Action replaceAll(SearchQuery query, String replacement) {
+        return new BasicAction(control, action -> ACTION_CMD_FACTORY.replaceAll(query, replacement));
+    }
+
     //my addition
     public Action insertTestText(String text) {
         return new BasicAction(control, action -> ACTION_CMD_FACTORY.insertText(text));
@@ -90,17 +90,23 @@ class BasicAction implements Action {
         return actionCmd;
     }
 
+    protected void apply() {
+        // typed text that is still buffered goes first
+        viewModel.flushPendingInput();
+        getActionCmd().apply(viewModel);
+    }
+
     @Override
     public void execute(ActionEvent event) {
         if (viewModel != null) {
-            Platform.runLater(() -> getActionCmd().apply(viewModel));
+            Platform.runLater(this::apply);
         } else {
             control.skinProperty().addListener(new InvalidationListener() {
                 @Override
                 public void invalidated(Observable observable) {
                     if (control.getSkin() != null) {
                         if (viewModel != null) {
-                            Platform.runLater(() -> getActionCmd().apply(viewModel));
+                            Platform.runLater(BasicAction.this::apply);
                         }
                         control.skinProperty().removeListener(this);
                     }
@@ -18,14 +18,14 @@ public class ImmediateBasicAction extends BasicAction {
     @Override
     public void execute(ActionEvent event) {
         if (viewModel != null) {
-            getActionCmd().apply(viewModel);
+            apply();
         } else {
             control.skinProperty().addListener(new InvalidationListener() {
                 @Override
                 public void invalidated(Observable observable) {
                     if (control.getSkin() != null) {
                         if (viewModel != null) {
-                            getActionCmd().apply(viewModel);
+                            apply();
                         }
                         control.skinProperty().removeListener(this);
                     }
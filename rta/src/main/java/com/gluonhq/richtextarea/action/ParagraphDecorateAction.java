@@ -62,6 +62,7 @@ public class ParagraphDecorateAction<T> extends DecorateAction<T> {
                 }
                 ParagraphDecoration newParagraphDecoration = builderTFunction.apply(builder, nv);
                 Platform.runLater(() ->  {
+                    viewModel.flushPendingInput();
                     ACTION_CMD_FACTORY.decorate(newParagraphDecoration).apply(viewModel);
                     control.requestFocus();
                 });
@@ -62,6 +62,7 @@ public class TextDecorateAction<T> extends DecorateAction<T> {
                 }
                 TextDecoration newTextDecoration = builderTFunction.apply(builder, nv);
                 Platform.runLater(() ->  {
+                    viewModel.flushPendingInput();
                     ACTION_CMD_FACTORY.decorate(newTextDecoration).apply(viewModel);
                     control.requestFocus();
                 });
@@ -31,14 +31,24 @@ import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.ReadOnlyIntegerWrapper;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 public abstract class AbstractTextBuffer implements TextBuffer {
 
+    // Revisions are taken from a process-wide sequence, so a revision also identifies its text buffer
+    private static final AtomicLong REVISIONS = new AtomicLong();
+    private static final int CHANGE_LOG_CAPACITY = 1024;
+
     private final Set<Consumer<Event>> listeners = new HashSet<>();
 
+    private long revision = REVISIONS.incrementAndGet();
+    private final ChangeLog changeLog = new ChangeLog(CHANGE_LOG_CAPACITY, revision);
+
     // textLengthProperty
     final ReadOnlyIntegerWrapper textLengthProperty = new ReadOnlyIntegerWrapper(this, "textLength");
     public ReadOnlyIntegerProperty textLengthProperty() {
@@ -56,7 +66,28 @@ public abstract class AbstractTextBuffer implements TextBuffer {
         listeners.remove(Objects.requireNonNull(listener));
     }
 
+    /**
+     * Gets the revision of the text buffer, that increases with every change
+     * @return the current revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Gets the changes done after a given revision, in order, from a log that keeps
+     * the most recent changes
+     * @param revision a revision of this text buffer
+     * @return the list of events since the given revision, or empty if the log doesn't
+     * reach that revision anymore, and the consumer should rebuild its state
+     */
+    public Optional<List<Event>> getChangesSince(long revision) {
+        return changeLog.since(revision);
+    }
+
     protected void fire( TextBuffer.Event event ) {
+        revision = REVISIONS.incrementAndGet();
+        changeLog.add(revision, event);
         listeners.forEach(l -> l.accept(event));
     }
 
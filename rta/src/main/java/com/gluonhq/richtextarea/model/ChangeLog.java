@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Bounded ring buffer with the most recent changes of a text buffer,
+ * each one recorded with the revision it produced
+ */
+class ChangeLog {
+
+    private final long[] revisions;
+    private final TextBuffer.Event[] events;
+    private int head;  // index of the oldest record
+    private int size;
+    private long baseRevision; // revision before the oldest record
+
+    ChangeLog(int capacity, long initialRevision) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity " + capacity + " should be positive");
+        }
+        this.revisions = new long[capacity];
+        this.events = new TextBuffer.Event[capacity];
+        this.baseRevision = initialRevision;
+    }
+
+    void add(long revision, TextBuffer.Event event) {
+        if (size == revisions.length) {
+            baseRevision = revisions[head];
+            events[head] = null;
+            head = (head + 1) % revisions.length;
+            size--;
+        }
+        int index = (head + size) % revisions.length;
+        revisions[index] = revision;
+        events[index] = event;
+        size++;
+    }
+
+    /**
+     * Gets the changes recorded after the given revision, in order
+     * @param revision a revision of the text buffer
+     * @return the list of events after that revision, or empty if the revision is older than
+     * the oldest record, or it doesn't belong to the text buffer
+     */
+    Optional<List<TextBuffer.Event>> since(long revision) {
+        int first;
+        if (revision == baseRevision) {
+            first = 0;
+        } else {
+            // records are sorted by revision, starting at head
+            int low = 0;
+            int high = size - 1;
+            first = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = revisions[(head + mid) % revisions.length];
+                if (value < revision) {
+                    low = mid + 1;
+                } else if (value > revision) {
+                    high = mid - 1;
+                } else {
+                    first = mid + 1;
+                    break;
+                }
+            }
+            if (first < 0) {
+                return Optional.empty();
+            }
+        }
+        List<TextBuffer.Event> list = new ArrayList<>(size - first);
+        for (int i = first; i < size; i++) {
+            list.add(events[(head + i) % revisions.length]);
+        }
+        return Optional.of(list);
+    }
+}
@@ -29,6 +29,9 @@ package com.gluonhq.richtextarea.model;
 
 import com.gluonhq.richtextarea.Tools;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Objects;
@@ -49,9 +52,12 @@ import java.util.stream.Collectors;
  */
 public class Document implements Serializable {
     private static final long serialVersionUID = 100L;
-    private final String text;
-    private final List<DecorationModel> decorationList;
+    private String text;
+    private transient CharSequence sequence;
+    private List<DecorationModel> decorationList;
     private final int caretPosition;
+    private transient long revision;
+    private transient int hash;
 
     public Document() {
         this("");
@@ -68,8 +74,43 @@ public class Document implements Serializable {
     }
 
     public Document(String text, List<DecorationModel> decorationList, int caretPosition) {
+        this(text, decorationList, caretPosition, 0);
+    }
+
+    /**
+     * Creates a document with the full content of a {@link TextBuffer} at a given revision.
+     *
+     * Two documents with the same revision are known to be equal, without comparing their content.
+     *
+     * @param text a string with the full raw text of the document
+     * @param decorationList the list of {@link DecorationModel}
+     * @param caretPosition the caret position
+     * @param revision the revision of the text buffer the document was created from, or 0 if unknown
+     */
+    public Document(String text, List<DecorationModel> decorationList, int caretPosition, long revision) {
         this.text = text;
-        this.decorationList = decorationList;
+        this.sequence = text;
+        this.decorationList = decorationList == null ? null : List.copyOf(decorationList);
+        this.caretPosition = caretPosition;
+        this.revision = revision;
+    }
+
+    /**
+     * Creates a document from a character sequence, like a {@link java.nio.CharBuffer} that maps
+     * a large file, which is referenced by the document without being copied into a string,
+     * as long as {@link #getText()} is not called.
+     *
+     * Emojis and other non-text objects are not parsed from such a sequence, so that it can be
+     * read as plain text, with the given decorations.
+     *
+     * @param text a character sequence with the full raw text of the document, that shouldn't change
+     * @param decorationList the list of {@link DecorationModel}
+     * @param caretPosition the caret position
+     */
+    public Document(CharSequence text, List<DecorationModel> decorationList, int caretPosition) {
+        this.text = text instanceof String ? (String) text : null;
+        this.sequence = text;
+        this.decorationList = decorationList == null ? null : List.copyOf(decorationList);
         this.caretPosition = caretPosition;
     }
 
@@ -81,11 +122,24 @@ public class Document implements Serializable {
      * @return a string with the full text of the document
      */
     public String getText() {
+        if (text == null && sequence != null) {
+            text = sequence.toString();
+        }
         return text;
     }
 
     /**
-     * Returns the list of {@link DecorationModel} that define the fragments of text
+     * Returns the full raw text of the document as the character sequence it was created with,
+     * without copying it.
+     *
+     * @return a character sequence with the full text of the document
+     */
+    public CharSequence getCharSequence() {
+        return sequence != null ? sequence : text;
+    }
+
+    /**
+     * Returns the unmodifiable list of {@link DecorationModel} that define the fragments of text
      * that share the same decorations.
      *
      * The range of each {@link Decoration} is defined based on the full raw text.
@@ -106,24 +160,56 @@ public class Document implements Serializable {
         return caretPosition;
     }
 
+    /**
+     * Returns the revision of the {@link TextBuffer} this document was created from, if known.
+     *
+     * @return the revision, or 0 if unknown
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getText();
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        sequence = text;
+        if (decorationList != null) {
+            decorationList = List.copyOf(decorationList);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Document document = (Document) o;
-        return Objects.equals(text, document.text) &&
+        if (revision != 0 && revision == document.revision) {
+            return true;
+        }
+        return hashCode() == document.hashCode() &&
+                Objects.equals(getText(), document.getText()) &&
                 Objects.equals(decorationList, document.decorationList);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(text, decorationList, caretPosition);
+        // the caret position is not part of the content, as in equals
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hash(getText(), decorationList);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public String toString() {
         return "Document{" +
-                "text='" + Tools.formatTextWithAnchors(text) + '\'' +
+                "text='" + Tools.formatTextWithAnchors(getText()) + '\'' +
                 ", decorationList=" + (decorationList == null ? "null" : "{" +
                     decorationList.stream().map(decorationModel -> " - " + decorationModel.toString()).collect(Collectors.joining("\n", "\n", ""))) +
                 "\n}, caretPosition=" + caretPosition +
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal of the changes applied to a {@link TextBuffer}, that allows recovering
+ * the document after a crash, without having to save the full document after every change.
+ *
+ * Once attached to a text buffer, every {@link TextBuffer.InsertEvent}, {@link TextBuffer.DeleteEvent}
+ * and {@link TextBuffer.DecorateEvent} is appended to the journal file as it happens, with the inserted
+ * units and their decorations, so the cost of each entry is proportional to the change, and not to the
+ * size of the document. Every given number of entries, a full checkpoint of the document is written to
+ * a sibling file, with the <code>.checkpoint</code> extension, and the journal is truncated.
+ *
+ * Entries and checkpoints are written in order by a background writer, so edits don't wait for
+ * the disk: each change only captures its data, and each checkpoint takes a {@link TextSnapshot}.
+ * {@link #flush()} waits until the pending writes are done.
+ *
+ * After a crash, {@link #recover()} replays the journal onto the last checkpoint.
+ */
+public final class DocumentJournal {
+
+    public static final Logger LOGGER = Logger.getLogger(DocumentJournal.class.getName());
+
+    private static final int MAGIC = 0x524A4E4C;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
+    private static final byte INSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte DECORATE = 3;
+
+    private final Path journalPath;
+    private final Path checkpointPath;
+    private final int checkpointInterval;
+    private final Consumer<TextBuffer.Event> eventListener = this::append;
+
+    private TextBuffer textBuffer;
+    private ExecutorService writer;
+    private int entries;
+    // only used by the writer thread
+    private DataOutputStream out;
+
+    /**
+     * Creates a journal that writes a checkpoint every 1000 entries
+     * @param journalPath the path of the journal file
+     */
+    public DocumentJournal(Path journalPath) {
+        this(journalPath, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Creates a journal
+     * @param journalPath the path of the journal file
+     * @param checkpointInterval the number of entries after which a new checkpoint is written
+     */
+    public DocumentJournal(Path journalPath, int checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("Checkpoint interval " + checkpointInterval + " should be positive");
+        }
+        this.journalPath = Objects.requireNonNull(journalPath);
+        this.checkpointPath = journalPath.resolveSibling(journalPath.getFileName() + ".checkpoint");
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public Path getJournalPath() {
+        return journalPath;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Starts journaling the changes of the given text buffer. A checkpoint with its
+     * current content is written first, replacing any existing checkpoint and journal,
+     * so {@link #recover()} should be called before, if needed.
+     * @param textBuffer the text buffer with the document being edited
+     */
+    public void attach(TextBuffer textBuffer) {
+        detach();
+        this.textBuffer = Objects.requireNonNull(textBuffer);
+        writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "RichTextArea-DocumentJournal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpoint();
+        textBuffer.addChangeListener(eventListener);
+    }
+
+    /**
+     * Stops journaling the changes of the attached text buffer, if any, once the
+     * pending writes are done. The journal and checkpoint files are kept.
+     */
+    public void detach() {
+        if (textBuffer != null) {
+            textBuffer.removeChangeListener(eventListener);
+            textBuffer = null;
+        }
+        if (writer != null) {
+            writer.execute(this::close);
+            writer.shutdown();
+            try {
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Waits until the entries and checkpoints of the changes done so far are written
+     */
+    public void flush() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Error flushing journal " + journalPath, e);
+        }
+    }
+
+    /**
+     * Writes a full checkpoint of the attached text buffer, and truncates the journal
+     */
+    public void checkpoint() {
+        if (textBuffer == null) {
+            return;
+        }
+        TextSnapshot snapshot = textBuffer.getSnapshot();
+        entries = 0;
+        writer.execute(() -> writeCheckpoint(snapshot));
+    }
+
+    private void writeCheckpoint(TextSnapshot snapshot) {
+        close();
+        Document document = snapshot.getDocument(0);
+        // the generation pairs the journal with its checkpoint, so a journal
+        // that wasn't truncated after a checkpoint is never replayed twice
+        long generation = ThreadLocalRandom.current().nextLong();
+        try {
+            Path tmpPath = checkpointPath.resolveSibling(checkpointPath.getFileName() + ".tmp");
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpPath)))) {
+                oos.writeLong(generation);
+                oos.writeObject(document);
+            }
+            Files.move(tmpPath, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)));
+            out.writeInt(MAGIC);
+            out.writeLong(generation);
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error writing checkpoint " + checkpointPath + ", journal disabled", e);
+            close();
+        }
+    }
+
+    /**
+     * Recovers the document from the last checkpoint and the journal entries that were
+     * appended after it. A truncated entry at the end of the journal, like the one a crash
+     * can leave, is ignored.
+     * @return the recovered document, or empty if there is no checkpoint
+     * @throws IOException if the checkpoint can't be read
+     */
+    public Optional<Document> recover() throws IOException {
+        flush();
+        if (!Files.exists(checkpointPath)) {
+            return Optional.empty();
+        }
+        long generation;
+        Document checkpoint;
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(checkpointPath)))) {
+            generation = ois.readLong();
+            checkpoint = (Document) ois.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Invalid checkpoint " + checkpointPath, e);
+        }
+        PieceTable pieceTable = new PieceTable(checkpoint);
+        if (Files.exists(journalPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journalPath)))) {
+                if (in.readInt() == MAGIC && in.readLong() == generation) {
+                    replay(in, pieceTable);
+                }
+            } catch (EOFException e) {
+                // incomplete header, nothing to replay
+            }
+        }
+        return Optional.of(new Document(pieceTable.getText(),
+                pieceTable.getDecorationModelList(0, pieceTable.getTextLength()), 0));
+    }
+
+    // captures the data of the change, that is written later by the writer thread
+    private void append(TextBuffer.Event event) {
+        Entry entry;
+        if (event instanceof TextBuffer.InsertEvent) {
+            TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+            int start = insertEvent.getPosition();
+            int end = start + insertEvent.getText().length();
+            // the inserted units, with their exportable text and decorations
+            Document fragment = new Document(textBuffer.getText(start, end),
+                    textBuffer.getDecorationModelList(start, end), 0);
+            entry = oos -> {
+                oos.writeByte(INSERT);
+                oos.writeInt(start);
+                oos.writeObject(fragment);
+            };
+        } else if (event instanceof TextBuffer.DeleteEvent) {
+            TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+            entry = oos -> {
+                oos.writeByte(DELETE);
+                oos.writeInt(deleteEvent.getPosition());
+                oos.writeInt(deleteEvent.getLength());
+            };
+        } else if (event instanceof TextBuffer.DecorateEvent && ((TextBuffer.DecorateEvent) event).getDecoration() != null) {
+            TextBuffer.DecorateEvent decorateEvent = (TextBuffer.DecorateEvent) event;
+            entry = oos -> {
+                oos.writeByte(DECORATE);
+                oos.writeInt(decorateEvent.getStart());
+                oos.writeInt(decorateEvent.getEnd());
+                oos.writeObject(decorateEvent.getDecoration());
+            };
+        } else {
+            return;
+        }
+        writer.execute(() -> writeEntry(entry));
+        if (++entries >= checkpointInterval) {
+            checkpoint();
+        }
+    }
+
+    private void writeEntry(Entry entry) {
+        if (out == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+                entry.write(oos);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error writing journal " + journalPath + ", journal disabled", e);
+            close();
+        }
+    }
+
+    private static void replay(DataInputStream in, PieceTable pieceTable) throws IOException {
+        while (true) {
+            byte[] bytes;
+            try {
+                bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+            } catch (EOFException e) {
+                return;
+            }
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                byte type = ois.readByte();
+                if (type == INSERT) {
+                    int position = ois.readInt();
+                    Document fragment = (Document) ois.readObject();
+                    if (position > pieceTable.getTextLength()) {
+                        throw new IOException("Insert position " + position + " is outside of text bounds [0, " + pieceTable.getTextLength() + "]");
+                    }
+                    insertFragment(pieceTable, position, fragment);
+                } else if (type == DELETE) {
+                    pieceTable.delete(ois.readInt(), ois.readInt());
+                } else if (type == DECORATE) {
+                    int start = ois.readInt();
+                    int end = ois.readInt();
+                    pieceTable.decorate(start, end, (Decoration) ois.readObject());
+                } else {
+                    throw new IOException("Invalid journal entry type " + type);
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error replaying journal, recovery stops at last valid entry", e);
+                return;
+            }
+        }
+    }
+
+    private static void insertFragment(PieceTable pieceTable, int position, Document fragment) {
+        String text = fragment.getText();
+        for (DecorationModel dm : fragment.getDecorations()) {
+            int end;
+            if (dm.getDecoration() instanceof ImageDecoration) {
+                pieceTable.decorate(position, position + 1, dm.getDecoration());
+                end = position + 1;
+            } else {
+                int length = pieceTable.getTextLength();
+                pieceTable.insert(text.substring(dm.getStart(), dm.getStart() + dm.getLength()), position);
+                end = position + pieceTable.getTextLength() - length;
+                if (end > position && dm.getDecoration() != null) {
+                    pieceTable.decorate(position, end, dm.getDecoration());
+                }
+            }
+            if (end > position && dm.getParagraphDecoration() != null) {
+                pieceTable.decorate(position, end, dm.getParagraphDecoration());
+            }
+            position = end;
+        }
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error closing journal " + journalPath, e);
+            }
+            out = null;
+        }
+    }
+
+    // an entry of the journal, written by the writer thread
+    private interface Entry {
+        void write(ObjectOutputStream oos) throws IOException;
+    }
+}
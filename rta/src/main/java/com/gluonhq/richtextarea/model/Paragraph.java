@@ -28,9 +28,12 @@
 package com.gluonhq.richtextarea.model;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Paragraph {
 
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
     /**
      * Global index of the initial position of the paragraph
      */
@@ -44,14 +47,33 @@ public class Paragraph {
 
     private final ParagraphDecoration decoration;
 
+    /**
+     * Content revision of the paragraph, that changes whenever
+     * its text or its decorations change
+     */
+    private final long revision;
+
     //added by me, set from ParagraphTile
     private double paraHeight;
 
 
     public Paragraph(int start, int end, ParagraphDecoration decoration) {
+        this(start, end, decoration, nextRevision());
+    }
+
+    public Paragraph(int start, int end, ParagraphDecoration decoration, long revision) {
         this.start = start;
         this.end = end;
         this.decoration = decoration;
+        this.revision = revision;
+    }
+
+    /**
+     * Creates a new content revision, unique within the application
+     * @return a new revision
+     */
+    public static long nextRevision() {
+        return REVISIONS.incrementAndGet();
     }
 
     public int getStart() {
@@ -66,6 +88,10 @@ public class Paragraph {
         return decoration;
     }
 
+    public long getRevision() {
+        return revision;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -75,8 +75,30 @@ public final class Piece {
     }
 
     public String getInternalText() {
+        return getInternalText(0, length);
+    }
+
+    /**
+     * Gets the internal text of a range of this piece, reading only the units of the buffer
+     * that overlap it
+     * @param from the initial offset within the piece, inclusive
+     * @param to the end offset within the piece, exclusive
+     * @return a string with the internal text of the range
+     */
+    public String getInternalText(int from, int to) {
+        UnitBuffer buffer = BufferType.ORIGINAL == bufferType ? source.originalText : source.additionBuffer;
+        return from >= to ? "" : buffer.getInternalText(start + from, start + to);
+    }
+
+    CharSequence getInternalSequence() {
+        UnitBuffer buffer = BufferType.ORIGINAL == bufferType ? source.originalText : source.additionBuffer;
+        return buffer.getInternalSequence(start, start + length);
+    }
+
+    char charAt(int offset) {
+        validateOffset(offset);
         UnitBuffer buffer = BufferType.ORIGINAL == bufferType ? source.originalText : source.additionBuffer;
-        return length == 0 ? "" : buffer.getInternalText().substring(start, start + length);
+        return buffer.charAt(start + offset);
     }
 
     public Unit getUnit() {
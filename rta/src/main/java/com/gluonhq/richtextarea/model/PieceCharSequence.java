@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import java.util.List;
+
+/**
+ * Read-only character sequence over a snapshot of the pieces of a {@link PieceTable}.
+ * Pieces and their buffers are not modified by later edits, so the sequence keeps
+ * the text it had when it was created, and nothing is copied until {@link #toString()}
+ * is called.
+ *
+ * The piece of the last access is kept, so sequential access is O(1) amortized, and
+ * random access is O(log n) in the number of pieces. Sub-sequences are views that
+ * share the snapshot. This class is not thread-safe, but a sequence created over
+ * internal sequences already resolved, like those of a {@link TextSnapshot}, only
+ * reads them, and each thread can use its own.
+ */
+final class PieceCharSequence implements CharSequence {
+
+    private final Piece[] pieces;
+    // internal sequences of the pieces, resolved on first access
+    private final CharSequence[] sequences;
+    // start positions of the pieces, and the text length at the end
+    private final int[] offsets;
+    private final int start;
+    private final int end;
+
+    // cursor: last piece accessed and its internal sequence
+    private int pieceIndex = -1;
+    private CharSequence pieceSequence;
+
+    PieceCharSequence(List<Piece> pieces) {
+        this.pieces = pieces.toArray(new Piece[0]);
+        this.sequences = new CharSequence[this.pieces.length];
+        this.offsets = new int[this.pieces.length + 1];
+        for (int i = 0; i < this.pieces.length; i++) {
+            offsets[i + 1] = offsets[i] + this.pieces[i].length;
+        }
+        this.start = 0;
+        this.end = offsets[this.pieces.length];
+    }
+
+    /**
+     * Creates a sequence over resolved internal sequences, that are not modified
+     * @param sequences the internal sequences of the pieces
+     * @param offsets the start positions of the pieces, and the text length at the end
+     */
+    PieceCharSequence(CharSequence[] sequences, int[] offsets) {
+        this(null, sequences, offsets, 0, offsets[sequences.length]);
+    }
+
+    private PieceCharSequence(Piece[] pieces, CharSequence[] sequences, int[] offsets, int start, int end) {
+        this.pieces = pieces;
+        this.sequences = sequences;
+        this.offsets = offsets;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is not in range [0, " + length() + ")");
+        }
+        int position = start + index;
+        if (pieceIndex < 0 || position < offsets[pieceIndex] || position >= offsets[pieceIndex + 1]) {
+            pieceIndex = pieceIndexAt(position);
+            pieceSequence = sequence(pieceIndex);
+        }
+        return pieceSequence.charAt(position - offsets[pieceIndex]);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") is not in range [0, " + length() + "]");
+        }
+        return new PieceCharSequence(pieces, sequences, offsets, this.start + start, this.start + end);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(length());
+        if (start < end) {
+            for (int i = pieceIndexAt(start); i < sequences.length && offsets[i] < end; i++) {
+                sb.append(sequence(i), Math.max(start, offsets[i]) - offsets[i],
+                        Math.min(end, offsets[i + 1]) - offsets[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private CharSequence sequence(int index) {
+        CharSequence sequence = sequences[index];
+        if (sequence == null) {
+            sequence = pieces[index].getInternalSequence();
+            sequences[index] = sequence;
+        }
+        return sequence;
+    }
+
+    // last non-empty piece that starts at or before the position
+    private int pieceIndexAt(int position) {
+        int low = 0;
+        int high = sequences.length - 1;
+        int index = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] <= position) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index;
+    }
+}
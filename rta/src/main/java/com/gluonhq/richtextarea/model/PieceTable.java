@@ -41,8 +41,8 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static com.gluonhq.richtextarea.model.TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR;
 import static com.gluonhq.richtextarea.model.TextBuffer.ZERO_WIDTH_TEXT;
@@ -73,7 +73,7 @@ public final class PieceTable extends AbstractTextBuffer {
      * @param document model with decorated text to start with
      */
     public PieceTable(Document document) {
-        String text = Objects.requireNonNull(Objects.requireNonNull(document).getText());
+        CharSequence text = Objects.requireNonNull(Objects.requireNonNull(document).getCharSequence());
         List<DecorationModel> decorations = document.getDecorations();
         if (decorations == null || decorations.isEmpty()) {
             decorations = List.of(new DecorationModel(0, text.length(), null, null));
@@ -83,7 +83,11 @@ public final class PieceTable extends AbstractTextBuffer {
         AtomicInteger accum = new AtomicInteger(0);
         decorations.forEach(d -> {
             // parse external text that spans the decoration into units
-            UnitBuffer units = UnitBuffer.convertTextToUnits(text.substring(d.getStart(), d.getStart() + d.getLength()));
+            // a non-string sequence (like a mapped file) is referenced as it is, without copying
+            // or parsing it for emojis and blocks
+            UnitBuffer units = text instanceof String ?
+                    UnitBuffer.convertTextToUnits(((String) text).substring(d.getStart(), d.getStart() + d.getLength())) :
+                    new UnitBuffer(new TextUnit(text.subSequence(d.getStart(), d.getStart() + d.getLength())));
             if (units.isEmpty()) {
                 units.append(new TextUnit(""));
             }
@@ -124,12 +128,10 @@ public final class PieceTable extends AbstractTextBuffer {
             throw new IllegalArgumentException("End index is not in range");
         }
         StringBuilder textSB = new StringBuilder();
-        StringBuilder sb = new StringBuilder();
         walkPieces((p, i, tp) -> {
             Unit unit = p.getUnit();
-            sb.append(p.getInternalText());
             if (start <= tp + p.length && end > tp && !unit.isEmpty()) {
-                String text = sb.substring(Math.max(start, tp), Math.min(end, tp + p.length));
+                String text = p.getInternalText(Math.max(start, tp) - tp, Math.min(end, tp + p.length) - tp);
                 if (!text.isEmpty()) {
                     textSB.append(unit instanceof TextUnit ? text : unit.getText());
                 }
@@ -154,15 +156,15 @@ public final class PieceTable extends AbstractTextBuffer {
             return position;
         }
         s0 = -1;
-        StringBuilder sb = new StringBuilder();
+        AtomicInteger accum = new AtomicInteger();
         walkPieces((p, i, tp) -> {
             Unit unit = p.getUnit();
-            int sbMin = sb.length();
-            int sbMax = sbMin + unit.getText().length();
+            int sbMin = accum.get();
+            int sbMax = sbMin + exportableLength(unit);
             if (sbMin <= position && position <= sbMax) {
                 s0 = tp + p.length;
             }
-            sb.append(unit.getText());
+            accum.set(sbMax);
             return (s0 > -1);
         });
         return s0;
@@ -190,27 +192,33 @@ public final class PieceTable extends AbstractTextBuffer {
         }
         s0 = -1;
         s1 = -1;
-        StringBuilder sb = new StringBuilder();
+        AtomicInteger accum = new AtomicInteger();
         walkPieces((p, i, tp) -> {
             Unit unit = p.getUnit();
-            int sbMin = sb.length();
+            int sbMin = accum.get();
+            int unitLength = exportableLength(unit);
             int deltaMin = unit instanceof TextUnit ?
                     Math.max(0, start - sbMin) : 0;
-            int sbMax = Math.min(end, sbMin + unit.getText().length());
+            int sbMax = Math.min(end, sbMin + unitLength);
             int deltaMax = unit instanceof TextUnit ?
-                    Math.max(0, (sbMin + unit.getText().length()) - end) : 0;
+                    Math.max(0, (sbMin + unitLength) - end) : 0;
             if (sbMin <= start && start <= sbMax) {
                 s0 = tp + deltaMin;
             }
             if (sbMin <= end && end <= sbMax) {
                 s1 = tp + p.length - deltaMax;
             }
-            sb.append(unit.getText());
+            accum.addAndGet(unitLength);
             return (s0 > -1 && s1 > -1);
         });
         return new Selection(s0, s1);
     }
 
+    // length of the exportable text of the unit, without copying text units
+    private static int exportableLength(Unit unit) {
+        return unit instanceof TextUnit ? unit.length() : unit.getText().length();
+    }
+
     /**
      * Gets the list of decoration models that decorate the text between a starting point
      * and an ending position.
@@ -231,12 +239,10 @@ public final class PieceTable extends AbstractTextBuffer {
         List<DecorationModel> mergedList = new ArrayList<>();
         if (!pieces.isEmpty()) {
             AtomicInteger accum = new AtomicInteger();
-            StringBuilder sb = new StringBuilder();
             walkPieces((p, i, tp) -> {
                 Unit unit = p.getUnit();
-                sb.append(p.getInternalText());
                 if (start <= tp + p.length && end > tp && !unit.isEmpty()) {
-                    String text = sb.substring(Math.max(start, tp), Math.min(end, tp + p.length));
+                    String text = p.getInternalText(Math.max(start, tp) - tp, Math.min(end, tp + p.length) - tp);
                     int length = 0;
                     if (!text.isEmpty()) {
                         length = (unit instanceof TextUnit ? text : unit.getText()).length();
@@ -266,6 +272,16 @@ public final class PieceTable extends AbstractTextBuffer {
         return pieceCharacterIterator;
     }
 
+    @Override
+    public CharSequence getCharSequence() {
+        return new PieceCharSequence(pieces);
+    }
+
+    @Override
+    public TextSnapshot getSnapshot() {
+        return new TextSnapshot(getRevision(), pieces);
+    }
+
     @Override
     public char charAt(int pos) {
         return pieceCharacterIterator.charAt(pos);
@@ -283,8 +299,13 @@ public final class PieceTable extends AbstractTextBuffer {
 
     // internal append
     List<Piece> appendInternal(UnitBuffer unitBuffer, Decoration decoration, ParagraphDecoration paragraphDecoration) {
-        int pos = additionBuffer.length();
         textLengthProperty.set(getTextLength() + unitBuffer.length());
+        return appendUnits(unitBuffer, decoration, paragraphDecoration);
+    }
+
+    // appends the units to the addition buffer, without changing the text length
+    List<Piece> appendUnits(UnitBuffer unitBuffer, Decoration decoration, ParagraphDecoration paragraphDecoration) {
+        int pos = additionBuffer.length();
         AtomicInteger accum = new AtomicInteger(pos);
         return unitBuffer.getUnitList().stream()
                 .peek(unit -> additionBuffer.append(unit))
@@ -322,12 +343,10 @@ public final class PieceTable extends AbstractTextBuffer {
      */
     @Override
     public void walkFragments(BiConsumer<Unit, Decoration> onFragment, int start, int end) {
-        StringBuilder sb = new StringBuilder();
         walkPieces((p, i, tp) -> {
             Unit unit = p.getUnit();
-            sb.append(p.getInternalText());
             if (start <= tp + p.length && end > tp && !unit.isEmpty()) {
-                String text = sb.substring(Math.max(start, tp), Math.min(end, tp + p.length));
+                String text = p.getInternalText(Math.max(start, tp) - tp, Math.min(end, tp + p.length) - tp);
                 if (!text.isEmpty()) {
                     onFragment.accept(unit instanceof TextUnit ? new TextUnit(text) : unit, p.getDecoration());
                 }
@@ -396,6 +415,18 @@ public final class PieceTable extends AbstractTextBuffer {
         commander.execute(new DeleteCmd(deletePosition, length));
     }
 
+    /**
+     * Replaces all the matches of a query with the given text, in a single
+     * pass over the pieces, that can be undone in one step
+     * @param query the search query
+     * @param replacement the replacement text, that can refer to groups of the match
+     *                    in {@link SearchQuery.Mode#REGEX} mode, like in {@link java.util.regex.Matcher#appendReplacement(StringBuilder, String)}
+     */
+    @Override
+    public void replaceAll(SearchQuery query, String replacement) {
+        commander.execute(new ReplaceAllCmd(query, replacement));
+    }
+
     /**
      * Undo latest text modification
      */
@@ -439,6 +470,15 @@ public final class PieceTable extends AbstractTextBuffer {
 
     }
 
+    // Text position where the piece at the given index starts
+    int getTextPosition(int pieceIndex) {
+        int textPosition = 0;
+        for (int i = 0; i < pieceIndex; i++) {
+            textPosition += pieces.get(i).length;
+        }
+        return textPosition;
+    }
+
     // Normalized list of pieces
     // Empty pieces purged
     static Collection<Piece> normalize(Collection<Piece> pieces) {
@@ -499,15 +539,13 @@ class PieceCharacterIterator implements CharacterIterator {
 
         posArray = new int[pt.pieces.size() + 1];
         lineFeedList = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
         pt.walkPieces((p, i, tp) -> {
-            sb.append(p.getInternalText());
-            String text = sb.substring(tp);
-            IntStream.iterate(text.indexOf(LF),
-                            index -> index >= 0,
-                            index -> text.indexOf(LF, index + 1))
-                    .boxed()
-                    .forEach(index -> lineFeedList.add(tp + index));
+            CharSequence text = p.getInternalSequence();
+            for (int index = 0; index < text.length(); index++) {
+                if (text.charAt(index) == LF) {
+                    lineFeedList.add(tp + index);
+                }
+            }
             posArray[i] = tp;
             return false;
         });
@@ -518,13 +556,24 @@ class PieceCharacterIterator implements CharacterIterator {
         if (pos < 0 || pos >= pt.getTextLength()) {
             throw new IllegalArgumentException("Invalid pos value");
         }
-        for (int i = 0; i < posArray.length; i++) {
-            if (posArray[i] <= pos && pos < posArray[i + 1]) {
-                char c = pt.pieces.get(i).getInternalText().charAt(pos - posArray[i]);
-                return c == ZERO_WIDTH_TABLE_SEPARATOR ? ' ' : c;
+        // binary search of the last piece that starts at or before pos
+        int low = 0;
+        int high = posArray.length - 2;
+        int i = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (posArray[mid] <= pos) {
+                i = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
             }
         }
-        return 0;
+        if (i < 0 || pos >= posArray[i + 1]) {
+            return 0;
+        }
+        char c = pt.pieces.get(i).charAt(pos - posArray[i]);
+        return c == ZERO_WIDTH_TABLE_SEPARATOR ? ' ' : c;
     }
 
     public List<Integer> getLineFeedList() {
@@ -640,8 +689,8 @@ class AppendCmd extends AbstractPTCmd {
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
             pt.pieces.removeAll(newPieces);
-            pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength() - unitBuffer.length(), unitBuffer.length()));
             pt.textLengthProperty.set(pt.getTextLength() - unitBuffer.length());
+            pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength(), unitBuffer.length()));
         }
     }
 
@@ -686,8 +735,8 @@ class InsertCmd extends AbstractCommand<PieceTable> {
         if (execSuccess) {
             pt.pieces.add(opPieceIndex, oldPiece);
             pt.pieces.removeAll(newPieces);
-            pt.fire(new TextBuffer.DeleteEvent(insertPosition, unitBuffer.length()));
             pt.textLengthProperty.set(pt.getTextLength() - unitBuffer.length());
+            pt.fire(new TextBuffer.DeleteEvent(insertPosition, unitBuffer.length()));
         }
     }
 
@@ -764,9 +813,12 @@ class DeleteCmd extends AbstractCommand<PieceTable> {
             pt.pieces.addAll(pieceIndex, oldPieces);
             pt.pieces.removeAll(newPieces);
 
+            // the restored pieces can span beyond the deleted range
+            int offset = deletePosition - pt.getTextPosition(pieceIndex);
             String text = oldPieces.stream()
               .map(Piece::getInternalText)
-              .reduce( "", (id, s) -> id + s );
+              .collect(Collectors.joining())
+              .substring(offset, offset + length);
             pt.textLengthProperty.set(pt.getTextLength() + length);
             pt.fire(new TextBuffer.InsertEvent(text, deletePosition));
         }
@@ -834,6 +886,158 @@ class DeleteCmd extends AbstractCommand<PieceTable> {
 
 }
 
+class ReplaceAllCmd extends AbstractCommand<PieceTable> {
+
+    private final SearchQuery query;
+    private final String replacement;
+
+    private boolean execSuccess = false;
+    private List<Piece> oldPieces;
+    private List<Piece> newPieces;
+    private int oldLength;
+    private int newLength;
+    // range of text from the start of the first match to the end of the last one
+    private int spanStart;
+    private int oldSpanEnd;
+
+    /**
+     * Command to replace all the matches of a query.
+     * @param query the search query
+     * @param replacement the replacement text
+     */
+    ReplaceAllCmd(SearchQuery query, String replacement) {
+        this.query = Objects.requireNonNull(query);
+        this.replacement = Objects.requireNonNull(replacement);
+    }
+
+    @Override
+    protected void doUndo(PieceTable pt) {
+        if (execSuccess) {
+            apply(pt, oldPieces, oldLength, newLength);
+        }
+    }
+
+    @Override
+    protected void doRedo(PieceTable pt) {
+        if (newPieces == null && !replace(pt)) {
+            return;
+        }
+        apply(pt, newPieces, newLength, oldLength);
+        execSuccess = true;
+    }
+
+    // sets the pieces, and notifies the span of text that changed. Listeners read the text
+    // on each event, so the span is removed first, and the pieces of the new span are set
+    // only before the insert event
+    private void apply(PieceTable pt, List<Piece> pieces, int length, int previousLength) {
+        int previousSpanEnd = oldSpanEnd + previousLength - oldLength;
+        int spanEnd = oldSpanEnd + length - oldLength;
+        if (previousSpanEnd > spanStart) {
+            setPieces(pt, removeSpan(pieces, spanEnd), length - (spanEnd - spanStart));
+            pt.fire(new TextBuffer.DeleteEvent(spanStart, previousSpanEnd - spanStart));
+        }
+        setPieces(pt, pieces, length);
+        if (spanEnd > spanStart) {
+            pt.fire(new TextBuffer.InsertEvent(pt.getCharSequence().subSequence(spanStart, spanEnd).toString(), spanStart));
+        }
+    }
+
+    private void setPieces(PieceTable pt, List<Piece> pieces, int length) {
+        pt.pieces.clear();
+        pt.pieces.addAll(pieces);
+        pt.textLengthProperty.set(length);
+    }
+
+    // gets the pieces without the text from spanStart to spanEnd
+    private List<Piece> removeSpan(List<Piece> pieces, int spanEnd) {
+        List<Piece> result = new ArrayList<>();
+        int textPosition = 0;
+        for (Piece piece : pieces) {
+            int pieceEnd = textPosition + piece.length;
+            if (textPosition < spanStart) {
+                int length = Math.min(pieceEnd, spanStart) - textPosition;
+                result.add(length == piece.length ? piece : piece.copy(piece.start, length));
+            }
+            if (pieceEnd > spanEnd) {
+                int start = Math.max(textPosition, spanEnd);
+                result.add(start == textPosition ? piece : piece.copy(piece.start + start - textPosition, pieceEnd - start));
+            }
+            textPosition = pieceEnd;
+        }
+        return result;
+    }
+
+    // builds the new list of pieces, returns false if there are no matches
+    private boolean replace(PieceTable pt) {
+        CharSequence text = pt.getCharSequence();
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        String template = query.getMode() == SearchQuery.Mode.REGEX ? replacement : Matcher.quoteReplacement(replacement);
+        StringBuilder sb = new StringBuilder();
+        int appendPosition = 0;
+        Matcher matcher = query.matcher(text);
+        while (matcher.find()) {
+            if (matcher.end() == matcher.start()) {
+                continue;
+            }
+            // appendReplacement adds the text before the match, that is dropped
+            matcher.appendReplacement(sb, template);
+            texts.add(sb.substring(matcher.start() - appendPosition));
+            sb.setLength(0);
+            starts.add(matcher.start());
+            ends.add(matcher.end());
+            appendPosition = matcher.end();
+        }
+        if (starts.isEmpty()) {
+            return false;
+        }
+
+        oldPieces = new ArrayList<>(pt.pieces);
+        oldLength = pt.getTextLength();
+        newPieces = new ArrayList<>();
+        newLength = oldLength;
+        int match = 0;
+        int textPosition = 0;
+        for (Piece piece : oldPieces) {
+            int pieceEnd = textPosition + piece.length;
+            int position = textPosition;
+            while (match < starts.size() && starts.get(match) < pieceEnd) {
+                int matchStart = starts.get(match);
+                if (matchStart >= position) {
+                    // the match starts in this piece
+                    if (matchStart > position) {
+                        newPieces.add(piece.copy(piece.start + position - textPosition, matchStart - position));
+                    }
+                    UnitBuffer unitBuffer = UnitBuffer.convertTextToUnits(texts.get(match));
+                    Decoration decoration = piece.getDecoration() instanceof TextDecoration ?
+                            piece.getDecoration() : TextDecoration.builder().presets().build();
+                    newPieces.addAll(pt.appendUnits(unitBuffer, decoration, piece.getParagraphDecoration()));
+                    newLength += unitBuffer.length() - (ends.get(match) - matchStart);
+                }
+                if (ends.get(match) > pieceEnd) {
+                    // the match continues in the next piece
+                    position = pieceEnd;
+                    break;
+                }
+                position = ends.get(match++);
+            }
+            if (position < pieceEnd) {
+                newPieces.add(piece.copy(piece.start + position - textPosition, pieceEnd - position));
+            }
+            textPosition = pieceEnd;
+        }
+        spanStart = starts.get(0);
+        oldSpanEnd = ends.get(ends.size() - 1);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplaceAllCmd[" + query + " with \"" + replacement + "\"]";
+    }
+}
+
 class ImageDecorateCmd extends AbstractCommand<PieceTable> {
 
     private final ImageDecoration decoration;
@@ -860,15 +1064,15 @@ class ImageDecorateCmd extends AbstractCommand<PieceTable> {
     @Override
     protected void doUndo(PieceTable pt) {
         if (execSuccess) {
+            pt.textLengthProperty.set(pt.getTextLength() - 1);
             if (newPiece != null) {
                 pt.pieces.removeAll(newPiece);
-                pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength() - 1, unitBuffer.length()));
+                pt.fire(new TextBuffer.DeleteEvent(pt.getTextLength(), unitBuffer.length()));
             } else {
                 pt.pieces.add(opPieceIndex, oldPiece);
                 pt.pieces.removeAll(newPieces);
                 pt.fire(new TextBuffer.DeleteEvent(insertPosition, unitBuffer.length()));
             }
-            pt.textLengthProperty.set(pt.getTextLength() - 1);
         }
     }
 
@@ -946,9 +1150,14 @@ class TextDecorateCmd extends AbstractCommand<PieceTable> {
             pt.pieces.addAll(pieceIndex, oldPieces);
             pt.pieces.removeAll(newPieces);
 
-            oldPieces.forEach(piece -> {
-                pt.fire(new TextBuffer.DecorateEvent(piece.start, piece.start + piece.length, piece.decoration));
-            });
+            // restored pieces are notified with their text positions
+            int textPosition = oldPieces.isEmpty() ? 0 : pt.getTextPosition(pt.pieces.indexOf(oldPieces.iterator().next()));
+            for (Piece piece : oldPieces) {
+                if (piece.decoration instanceof TextDecoration) {
+                    pt.fire(new TextBuffer.DecorateEvent(textPosition, textPosition + piece.length, piece.decoration));
+                }
+                textPosition += piece.length;
+            }
         }
     }
 
@@ -1051,9 +1260,14 @@ class ParagraphDecorateCmd extends AbstractCommand<PieceTable> {
             pt.pieces.addAll(pieceIndex, oldPieces);
             pt.pieces.removeAll(newPieces);
 
-            oldPieces.forEach(piece -> {
-                pt.fire(new TextBuffer.DecorateEvent(piece.start, piece.start + piece.length, piece.decoration));
-            });
+            // restored pieces are notified with their text positions
+            int textPosition = oldPieces.isEmpty() ? 0 : pt.getTextPosition(pt.pieces.indexOf(oldPieces.iterator().next()));
+            for (Piece piece : oldPieces) {
+                if (piece.paragraphDecoration != null) {
+                    pt.fire(new TextBuffer.DecorateEvent(textPosition, textPosition + piece.length, piece.paragraphDecoration));
+                }
+                textPosition += piece.length;
+            }
         }
     }
 
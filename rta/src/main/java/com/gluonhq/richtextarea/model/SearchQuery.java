@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import com.gluonhq.richtextarea.Selection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable search query, that finds matches over the internal text of a
+ * {@link TextBuffer}, as given by {@link TextBuffer#getCharSequence()}, without copying it.
+ * Empty matches are skipped.
+ */
+public final class SearchQuery {
+
+    public enum Mode {
+        /** matches the exact text */
+        LITERAL,
+        /** matches the text, ignoring case */
+        IGNORE_CASE,
+        /** matches the text as a regular expression */
+        REGEX
+    }
+
+    private final String text;
+    private final Mode mode;
+    private final Pattern pattern;
+
+    /**
+     * Creates a search query
+     * @param text the text to search for
+     * @param mode how the text is matched
+     * @throws IllegalArgumentException if the text is empty, or if it is not a valid
+     * regular expression in {@link Mode#REGEX} mode
+     */
+    public SearchQuery(String text, Mode mode) {
+        this.text = Objects.requireNonNull(text);
+        this.mode = Objects.requireNonNull(mode);
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Search text can't be empty");
+        }
+        switch (mode) {
+            case LITERAL:
+                pattern = Pattern.compile(text, Pattern.LITERAL);
+                break;
+            case IGNORE_CASE:
+                pattern = Pattern.compile(text, Pattern.LITERAL | Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                break;
+            default:
+                pattern = Pattern.compile(text);
+        }
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Finds the first match that starts at or after a given position, continuing
+     * from the start of the text if there is none and wrap is set
+     * @param text the text to search
+     * @param from the position to search from, like the caret position
+     * @param wrap if the search continues from the start of the text
+     * @return the range of the match, or empty if there is none
+     */
+    public Optional<Selection> find(CharSequence text, int from, boolean wrap) {
+        Matcher matcher = pattern.matcher(text);
+        Optional<Selection> match = find(matcher, Math.max(0, Math.min(from, text.length())));
+        if (match.isEmpty() && wrap && from > 0) {
+            match = find(matcher, 0);
+        }
+        return match;
+    }
+
+    /**
+     * Finds all the matches within a range of the text
+     * @param text the text to search
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @return the list of ranges of the matches, in order
+     */
+    public List<Selection> findAll(CharSequence text, int start, int end) {
+        Matcher matcher = pattern.matcher(text).region(start, end);
+        List<Selection> matches = new ArrayList<>();
+        while (matcher.find()) {
+            if (matcher.end() > matcher.start()) {
+                matches.add(new Selection(matcher.start(), matcher.end()));
+            }
+        }
+        return matches;
+    }
+
+    Matcher matcher(CharSequence text) {
+        return pattern.matcher(text);
+    }
+
+    private static Optional<Selection> find(Matcher matcher, int from) {
+        if (!matcher.find(from)) {
+            return Optional.empty();
+        }
+        do {
+            if (matcher.end() > matcher.start()) {
+                return Optional.of(new Selection(matcher.start(), matcher.end()));
+            }
+        } while (matcher.find());
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchQuery that = (SearchQuery) o;
+        return text.equals(that.text) && mode == that.mode;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(text, mode);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery[\"" + text + "\", " + mode + "]";
+    }
+}
@@ -237,11 +237,11 @@ public class Table {
     }
 
     private static void removeLineFeed(UnitBuffer buffer) {
-        Unit unit = buffer.getUnitList().get(buffer.getUnitList().size() - 1);
+        int index = buffer.getUnitList().size() - 1;
+        Unit unit = buffer.getUnitList().get(index);
         String internalText = unit.getInternalText();
         if (unit instanceof TextUnit && internalText.endsWith("\n")) {
-            buffer.getUnitList().remove(unit);
-            buffer.getUnitList().add(new TextUnit(internalText.substring(0, internalText.length() - 1)));
+            buffer.setUnit(index, new TextUnit(internalText.substring(0, internalText.length() - 1)));
         }
     }
 
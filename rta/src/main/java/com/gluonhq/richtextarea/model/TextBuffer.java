@@ -32,6 +32,7 @@ import javafx.beans.property.ReadOnlyIntegerProperty;
 
 import java.text.CharacterIterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -52,7 +53,21 @@ public interface TextBuffer {
     List<DecorationModel> getDecorationModelList(int start, int end);
 
     CharacterIterator getCharacterIterator();
+
+    /**
+     * Gets a read-only view of the internal text of the buffer, as it is when this
+     * method is called. Text is not copied until {@link CharSequence#toString()} is called
+     * @return a character sequence with the internal text
+     */
+    CharSequence getCharSequence();
     char charAt(int pos);
+
+    /**
+     * Takes an immutable snapshot of the text and decorations of the buffer at its current
+     * revision, that can be read from any thread while the buffer keeps changing
+     * @return a snapshot of the buffer
+     */
+    TextSnapshot getSnapshot();
     List<Integer> getLineFeeds();
     void resetCharacterIterator();
 
@@ -60,6 +75,13 @@ public interface TextBuffer {
     void append(String text);
     void delete(final int deletePosition, int length);
 
+    /**
+     * Replaces all the matches of a search query, as a single change that can be undone in one step
+     * @param query the search query
+     * @param replacement the replacement text
+     */
+    void replaceAll(SearchQuery query, String replacement);
+
     /**
      * Adds decoration to Text in the specified range.
      * @param start index to start, inclusive.
@@ -75,6 +97,8 @@ public interface TextBuffer {
 
     void addChangeListener(Consumer<TextBuffer.Event> listener);
     void removeChangeListener(Consumer<TextBuffer.Event> listener);
+    long getRevision();
+    Optional<List<Event>> getChangesSince(long revision);
 
     Decoration getDecorationAtCaret(int caretPosition);
     void setDecorationAtCaret(TextDecoration decoration);
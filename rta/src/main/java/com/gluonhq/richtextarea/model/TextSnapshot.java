@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable snapshot of the text and decorations of a {@link TextBuffer} at a given revision.
+ *
+ * Taking a snapshot only resolves the pieces of the buffer, without copying their text, as
+ * pieces, units and decorations are not modified by later edits. Once taken, a snapshot
+ * doesn't change and can be read from any thread without locks, for instance to export,
+ * save or validate the document in the background while it is being edited.
+ */
+public final class TextSnapshot {
+
+    private final long revision;
+    private final CharSequence[] sequences;
+    private final Unit[] units;
+    private final Decoration[] decorations;
+    private final ParagraphDecoration[] paragraphDecorations;
+    // start positions of the pieces, and the text length at the end
+    private final int[] offsets;
+
+    TextSnapshot(long revision, List<Piece> pieces) {
+        int size = pieces.size();
+        this.revision = revision;
+        this.sequences = new CharSequence[size];
+        this.units = new Unit[size];
+        this.decorations = new Decoration[size];
+        this.paragraphDecorations = new ParagraphDecoration[size];
+        this.offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            Piece piece = pieces.get(i);
+            sequences[i] = piece.getInternalSequence();
+            units[i] = piece.getUnit();
+            decorations[i] = piece.getDecoration();
+            paragraphDecorations[i] = piece.getParagraphDecoration();
+            offsets[i + 1] = offsets[i] + piece.length;
+        }
+    }
+
+    /**
+     * Gets the revision of the text buffer when the snapshot was taken
+     * @return the revision
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Gets the length of the internal text
+     * @return the internal text length
+     */
+    public int getTextLength() {
+        return offsets[sequences.length];
+    }
+
+    /**
+     * Gets a read-only view of the internal text. The view is not thread-safe, so
+     * each thread should get its own
+     * @return a character sequence with the internal text
+     */
+    public CharSequence getCharSequence() {
+        return new PieceCharSequence(sequences, offsets);
+    }
+
+    /**
+     * Gets the decoration of the character at a given position, in O(log n) in the number of runs
+     * @param position a position within the internal text
+     * @return the decoration, or null if the position is outside the text
+     */
+    public Decoration getDecorationAt(int position) {
+        if (position < 0 || position >= getTextLength()) {
+            return null;
+        }
+        // last run that starts at or before the position, which is not empty
+        int low = 0;
+        int high = sequences.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return decorations[low];
+    }
+
+    /**
+     * Gets the exportable text, as {@link TextBuffer#getText()} does
+     * @return the exportable text
+     */
+    public String getText() {
+        StringBuilder sb = new StringBuilder(getTextLength());
+        for (int i = 0; i < units.length; i++) {
+            if (!units[i].isEmpty()) {
+                sb.append(units[i] instanceof TextUnit ? sequences[i] : units[i].getText());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Walks through the unit fragments of the text, as {@link TextBuffer#walkFragments(BiConsumer, int, int)}
+     * does for the whole text
+     * @param onFragment callback to get fragment info
+     */
+    public void walkFragments(BiConsumer<Unit, Decoration> onFragment) {
+        for (int i = 0; i < units.length; i++) {
+            if (!units[i].isEmpty() && sequences[i].length() > 0) {
+                onFragment.accept(units[i] instanceof TextUnit ? new TextUnit(sequences[i].toString()) : units[i], decorations[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the list of decoration models of the exportable text, merging consecutive
+     * runs with the same decorations, as {@link TextBuffer#getDecorationModelList(int, int)}
+     * does for the whole text
+     * @return a list of {@link DecorationModel}
+     */
+    public List<DecorationModel> getDecorationModelList() {
+        List<DecorationModel> mergedList = new ArrayList<>();
+        DecorationModel dm = null;
+        int accum = 0;
+        for (int i = 0; i < units.length; i++) {
+            Unit unit = units[i];
+            if (unit.isEmpty()) {
+                continue;
+            }
+            int length = sequences[i].length() == 0 ? 0 : exportableLength(i);
+            if (dm == null) {
+                dm = new DecorationModel(0, length, decorations[i], paragraphDecorations[i]);
+            } else if (decorations[i].equals(dm.getDecoration()) && paragraphDecorations[i].equals(dm.getParagraphDecoration())) {
+                mergedList.remove(mergedList.size() - 1);
+                dm = new DecorationModel(dm.getStart(), dm.getLength() + length, dm.getDecoration(), dm.getParagraphDecoration());
+            } else {
+                accum += dm.getLength();
+                dm = new DecorationModel(accum, length, decorations[i], paragraphDecorations[i]);
+            }
+            mergedList.add(dm);
+        }
+        if (mergedList.isEmpty()) {
+            // provide a default decoration
+            mergedList.add(DecorationModel.createDefaultDecorationModel(0));
+        }
+        return mergedList;
+    }
+
+    /**
+     * Creates a document with the text and decorations of the snapshot
+     * @param caretPosition the caret position, within the internal text
+     * @return a new document, with the revision of the snapshot
+     */
+    public Document getDocument(int caretPosition) {
+        // the caret of the document is based on the exportable text
+        int caret = 0;
+        for (int i = 0; i < units.length && offsets[i] < caretPosition; i++) {
+            if (!units[i].isEmpty()) {
+                caret += units[i] instanceof TextUnit && offsets[i + 1] > caretPosition ?
+                        caretPosition - offsets[i] : exportableLength(i);
+            }
+        }
+        return new Document(getText(), getDecorationModelList(), caret, revision);
+    }
+
+    private int exportableLength(int index) {
+        return units[index] instanceof TextUnit ? sequences[index].length() : units[index].getText().length();
+    }
+}
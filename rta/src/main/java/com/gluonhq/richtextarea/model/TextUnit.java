@@ -34,20 +34,37 @@ import com.gluonhq.richtextarea.Tools;
  */
 public class TextUnit implements Unit {
 
-    private final String text;
+    private final CharSequence text;
 
     public TextUnit(String text) {
         this.text = text;
     }
 
+    /**
+     * Creates a text unit that references the given character sequence, without copying it.
+     * The sequence is expected not to change while the unit is in use.
+     * @param text the character sequence of the unit
+     */
+    public TextUnit(CharSequence text) {
+        this.text = text;
+    }
+
     @Override
     public String getText() {
-        return text;
+        return text == null ? null : text.toString();
     }
 
     @Override
     public String getInternalText() {
-        return text;
+        return getText();
+    }
+
+    /**
+     * Gets the character sequence of this unit, without copying it
+     * @return the character sequence, or an empty string if there is no text
+     */
+    CharSequence getCharSequence() {
+        return text == null ? "" : text;
     }
 
     @Override
@@ -57,11 +74,11 @@ public class TextUnit implements Unit {
 
     @Override
     public boolean isEmpty() {
-        return text == null || text.isEmpty();
+        return text == null || text.length() == 0;
     }
 
     @Override
     public String toString() {
-        return "TU{'" + (isEmpty() ? "" : Tools.formatTextWithAnchors(text)) + "'}";
+        return "TU{'" + (isEmpty() ? "" : Tools.formatTextWithAnchors(getText())) + "'}";
     }
 }
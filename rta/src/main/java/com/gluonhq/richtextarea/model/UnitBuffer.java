@@ -31,8 +31,11 @@ package com.gluonhq.richtextarea.model;
 import com.gluonhq.emoji.Emoji;
 import com.gluonhq.emoji.util.TextUtils;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -56,6 +59,9 @@ public class UnitBuffer {
             Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL);
 
     private final List<Unit> unitList;
+    // offsets[i] is the internal position where unit i starts, valid for the first validOffsets units
+    private int[] offsets = new int[1];
+    private int validOffsets;
 
     public UnitBuffer() {
         this(List.of());
@@ -88,16 +94,70 @@ public class UnitBuffer {
      */
     public String getInternalText() {
         final StringBuilder sb = new StringBuilder();
-        unitList.forEach(unit -> sb.append(unit.getInternalText()));
+        unitList.forEach(unit -> sb.append(getInternalSequence(unit)));
         return sb.toString();
     }
 
+    /**
+     * Gets the internal text of the unit buffer between two positions, visiting only the units
+     * that overlap that range.
+     * @param start the initial position of the range, inclusive
+     * @param end the end position of the range, exclusive
+     * @return a string with the internal text representation of the range
+     */
+    public String getInternalText(int start, int end) {
+        if (start >= end) {
+            return "";
+        }
+        updateOffsets();
+        final StringBuilder sb = new StringBuilder(end - start);
+        for (int i = unitIndexAt(start); i < unitList.size() && offsets[i] < end; i++) {
+            CharSequence sequence = getInternalSequence(unitList.get(i));
+            sb.append(sequence, Math.max(0, start - offsets[i]), Math.min(sequence.length(), end - offsets[i]));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the internal text of the unit buffer between two positions. If the range
+     * lies within a single unit, a view of its character sequence is returned without copying
+     * @param start the initial position of the range, inclusive
+     * @param end the end position of the range, exclusive
+     * @return a character sequence with the internal text representation of the range
+     */
+    CharSequence getInternalSequence(int start, int end) {
+        if (start >= end) {
+            return "";
+        }
+        updateOffsets();
+        int index = unitIndexAt(start);
+        if (end <= offsets[index + 1]) {
+            return CharBuffer.wrap(getInternalSequence(unitList.get(index)), start - offsets[index], end - offsets[index]);
+        }
+        return getInternalText(start, end);
+    }
+
+    /**
+     * Gets the internal character at a given position
+     * @param position the position within the buffer range
+     * @return the internal char at that position
+     */
+    public char charAt(int position) {
+        updateOffsets();
+        if (position < 0 || position >= offsets[unitList.size()]) {
+            throw new IllegalArgumentException("Position " + position + " is not in range [0, " + offsets[unitList.size()] + ")");
+        }
+        int index = unitIndexAt(position);
+        return getInternalSequence(unitList.get(index)).charAt(position - offsets[index]);
+    }
+
     /**
      * Gets the internal length of the unit buffer. Useful for Piece operations
      * @return an integer value of the internal number of positions that the unit spans
      */
     public int length() {
-        return getUnitList().stream().mapToInt(Unit::length).sum();
+        updateOffsets();
+        return offsets[unitList.size()];
     }
 
     /**
@@ -156,6 +216,7 @@ public class UnitBuffer {
         }
         unitList.clear();
         unitList.addAll(buffer);
+        validOffsets = 0;
     }
 
     /**
@@ -173,14 +234,25 @@ public class UnitBuffer {
         insert(unit, Math.max(start, end));
         insert(unit, Math.min(start, end));
         unitList.subList(unitList.indexOf(unit), unitList.lastIndexOf(unit) + 1).clear();
+        validOffsets = 0;
     }
 
     /**
      * Gives the list of units of this buffer
-     * @return the list of units
+     * @return an unmodifiable view of the list of units
      */
     public List<Unit> getUnitList() {
-        return unitList;
+        return Collections.unmodifiableList(unitList);
+    }
+
+    /**
+     * Replaces the unit at a given index of the list of units
+     * @param index the index of the unit
+     * @param unit the new unit
+     */
+    void setUnit(int index, Unit unit) {
+        unitList.set(index, unit);
+        validOffsets = Math.min(validOffsets, index);
     }
 
     /**
@@ -199,17 +271,52 @@ public class UnitBuffer {
      * @return the unit that has this range or an empty TextUnit
      */
     public Unit getUnitWithRange(int start, int end) {
-        int accum = 0;
-        for (Unit unit : unitList) {
-            if (unit.isEmpty()) continue;
-            if (accum <= start && end <= accum + unit.length()) {
-                return unit;
+        updateOffsets();
+        if (start >= 0 && start < offsets[unitList.size()]) {
+            int index = unitIndexAt(start);
+            if (end <= offsets[index + 1]) {
+                return unitList.get(index);
             }
-            accum += unit.length();
         }
         return new TextUnit("");
     }
 
+    private void updateOffsets() {
+        int size = unitList.size();
+        if (validOffsets == size) {
+            return;
+        }
+        if (offsets.length < size + 1) {
+            offsets = Arrays.copyOf(offsets, Math.max(size + 1, 2 * offsets.length));
+        }
+        for (int i = validOffsets; i < size; i++) {
+            offsets[i + 1] = offsets[i] + unitList.get(i).length();
+        }
+        validOffsets = size;
+    }
+
+    // index of the non-empty unit that contains the position, requires valid offsets
+    private int unitIndexAt(int position) {
+        int low = 0;
+        int high = unitList.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        while (low > 0 && offsets[low] == offsets[low + 1]) {
+            low--;
+        }
+        return low;
+    }
+
+    private static CharSequence getInternalSequence(Unit unit) {
+        return unit instanceof TextUnit ? ((TextUnit) unit).getCharSequence() : unit.getInternalText();
+    }
+
     @Override
     public String toString() {
         return "UnitBuffer{" + unitList + "}";
@@ -32,6 +32,7 @@ import com.gluonhq.richtextarea.Selection;
 import com.gluonhq.richtextarea.model.Block;
 import com.gluonhq.richtextarea.model.Decoration;
 import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.SearchQuery;
 import com.gluonhq.richtextarea.model.TableDecoration;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.text.TextAlignment;
@@ -185,6 +186,14 @@ public final class ActionCmdFactory {
         return new ActionCmdReplaceText(text);
     }
 
+    public ActionCmd find(SearchQuery query) {
+        return new ActionCmdFind(query);
+    }
+
+    public ActionCmd replaceAll(SearchQuery query, String replacement) {
+        return new ActionCmdReplaceAll(query, replacement);
+    }
+
     public ActionCmd decorate(Decoration... decorations) {
         return new ActionCmdDecorate(decorations);
     }
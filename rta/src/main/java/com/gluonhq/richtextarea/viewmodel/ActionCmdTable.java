@@ -198,9 +198,8 @@ class ActionCmdTable implements ActionCmd {
         }
         viewModel.getParagraphWithCaret().filter(p -> p.getEnd() > 0 && p.getDecoration().hasTableDecoration()).ifPresent(p -> {
             TableDecoration tableDecoration = viewModel.getDecorationAtParagraph().getTableDecoration();
-            UnitBuffer buffer = new UnitBuffer();
+            UnitBuffer buffer = new UnitBuffer(new TextUnit("["));
             viewModel.walkFragments((u, d) -> buffer.append(u), p.getStart(), p.getEnd());
-            buffer.getUnitList().add(0, new TextUnit("["));
             new Table(buffer, 0, tableDecoration.getRows(), tableDecoration.getColumns()).printTable();
         });
     }
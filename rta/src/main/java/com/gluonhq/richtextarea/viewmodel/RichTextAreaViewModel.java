@@ -34,8 +34,10 @@ import com.gluonhq.richtextarea.model.Document;
 import com.gluonhq.richtextarea.model.ImageDecoration;
 import com.gluonhq.richtextarea.model.Paragraph;
 import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import com.gluonhq.richtextarea.model.SearchQuery;
 import com.gluonhq.richtextarea.model.TextBuffer;
 import com.gluonhq.richtextarea.model.TextDecoration;
+import com.gluonhq.richtextarea.model.TextSnapshot;
 import com.gluonhq.richtextarea.model.Unit;
 import com.gluonhq.richtextarea.model.UnitBuffer;
 import com.gluonhq.richtextarea.undo.CommandManager;
@@ -46,9 +48,11 @@ import javafx.collections.ObservableList;
 import javafx.scene.image.Image;
 import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
-import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -59,8 +63,6 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-
 import static com.gluonhq.richtextarea.RichTextArea.RTA_DATA_FORMAT;
 
 public class RichTextAreaViewModel {
@@ -71,11 +73,16 @@ public class RichTextAreaViewModel {
     public enum Remove { LETTER, WORD, LINE }
 
     private final CommandManager<RichTextAreaViewModel> commandManager = new CommandManager<>(this, this::updateProperties);
-    private BreakIterator wordIterator;
     private int undoStackSizeWhenSaved = 0;
+    // applies input that the view has buffered but not sent yet
+    private Runnable pendingInputHandler;
 
     private final ObservableList<Paragraph> paragraphList = FXCollections.observableArrayList();
+    private final WordBoundaryIndex wordBoundaryIndex = new WordBoundaryIndex(this::getTextBuffer, paragraphList);
     Paragraph lastParagraph;
+    // paragraphs from the last update, and the revision of the text buffer they were built from
+    private List<Paragraph> builtParagraphList = List.of();
+    private long builtParagraphListRevision;
     private final BiFunction<Double, Boolean, Integer> getNextRowPosition;
     private final Function<Boolean, Integer> getNextTableCellPosition;
 
@@ -331,6 +338,16 @@ public class RichTextAreaViewModel {
                 "\n".equals(getTextBuffer().getText(paragraph.getStart(), paragraph.getEnd())));
     }
 
+    /**
+     * Takes an immutable snapshot of the text and decorations of the document being edited,
+     * that background tasks can read without blocking the FX thread
+     * @return a snapshot of the text buffer
+     */
+    public TextSnapshot getSnapshot() {
+        flushPendingInput();
+        return getTextBuffer().getSnapshot();
+    }
+
     public final void addChangeListener(Consumer<TextBuffer.Event> listener) {
         this.getTextBuffer().addChangeListener(listener);
     }
@@ -343,6 +360,24 @@ public class RichTextAreaViewModel {
         return commandManager;
     }
 
+    /**
+     * Sets the handler that applies the input buffered by the view
+     * @param pendingInputHandler the handler, or null
+     */
+    public void setPendingInputHandler(Runnable pendingInputHandler) {
+        this.pendingInputHandler = pendingInputHandler;
+    }
+
+    /**
+     * Applies the input buffered by the view, if any, so commands
+     * that follow are applied after it
+     */
+    public void flushPendingInput() {
+        if (pendingInputHandler != null) {
+            pendingInputHandler.run();
+        }
+    }
+
     void moveCaretPosition(final int charCount) {
         int pos = getCaretPosition() + charCount;
         if (pos >= 0 && pos <= getTextLength()) {
@@ -428,6 +463,31 @@ public class RichTextAreaViewModel {
         }
     }
 
+    /**
+     * Selects the next match of the query after the selection or the caret,
+     * continuing from the start of the text if needed
+     * @param query the search query
+     * @return the range of the match, or empty if there is none
+     */
+    public Optional<Selection> findNext(SearchQuery query) {
+        Selection selection = getSelection();
+        int from = selection.isDefined() ? selection.getEnd() : getCaretPosition();
+        Optional<Selection> match = query.find(getTextBuffer().getCharSequence(), from, true);
+        match.ifPresent(m -> {
+            setCaretPosition(m.getEnd());
+            setSelection(m);
+        });
+        return match;
+    }
+
+    void replaceAll(SearchQuery query, String replacement) {
+        clearSelection();
+        int caretPosition = getCaretPosition();
+        setCaretPosition(-1);
+        getTextBuffer().replaceAll(query, replacement);
+        setCaretPosition(Math.min(caretPosition, getTextLength()));
+    }
+
     /**
      * Deletes selection if exists and sets caret to the start position of the deleted selection
      */
@@ -443,6 +503,7 @@ public class RichTextAreaViewModel {
     }
 
     void clipboardCopy(final boolean cutText) {
+        flushPendingInput();
         Selection selection = getSelection();
         if (selection.isDefined()) {
             Document currentDocument = getCurrentDocument(selection);
@@ -582,7 +643,10 @@ public class RichTextAreaViewModel {
     public void resetCharacterIterator() {
         getTextBuffer().resetCharacterIterator();
         updateParagraphList();
-        LOGGER.log(Level.FINE, getTextBuffer().toString());
+        if (LOGGER.isLoggable(Level.FINE)) {
+            // the dump copies the whole text, so it is only built when it is logged
+            LOGGER.log(Level.FINE, getTextBuffer().toString());
+        }
     }
 
     public void walkFragments(BiConsumer<Unit, Decoration> onFragment, int start, int end) {
@@ -590,29 +654,109 @@ public class RichTextAreaViewModel {
     }
 
     private void updateParagraphList() {
-        List<Integer> lineFeeds = getTextBuffer().getLineFeeds();
+        TextBuffer textBuffer = getTextBuffer();
+        Map<Integer, Paragraph> unchangedParagraphs = getUnchangedParagraphs(textBuffer);
+        List<Integer> lineFeeds = textBuffer.getLineFeeds();
         AtomicInteger pos = new AtomicInteger();
         List<Paragraph> newParagraphList = new ArrayList<>();
         lineFeeds.forEach(lfPos ->
-                newParagraphList.add(getParagraphAt(pos.getAndSet(lfPos), pos.incrementAndGet())));
+                newParagraphList.add(getParagraphAt(pos.getAndSet(lfPos), pos.incrementAndGet(), unchangedParagraphs)));
         if (pos.get() <= getTextLength()) {
-            lastParagraph = getParagraphAt(pos.get(), getTextLength());
+            lastParagraph = getParagraphAt(pos.get(), getTextLength(), unchangedParagraphs);
             newParagraphList.add(lastParagraph);
         }
+        builtParagraphList = newParagraphList;
+        builtParagraphListRevision = textBuffer.getRevision();
         paragraphList.setAll(newParagraphList);
     }
 
-    private Paragraph getParagraphAt(int start, int end) {
+    private Paragraph getParagraphAt(int start, int end, Map<Integer, Paragraph> unchangedParagraphs) {
         ParagraphDecoration pd = getTextBuffer().getParagraphDecorationAtCaret(start);
-        return new Paragraph(start, end, pd != null ? pd : ParagraphDecoration.builder().presets().build());
+        if (pd == null) {
+            pd = ParagraphDecoration.builder().presets().build();
+        }
+        Paragraph unchanged = unchangedParagraphs.get(start);
+        if (unchanged != null && unchanged.getEnd() == end && unchanged.getDecoration().equals(pd)) {
+            // keep content revision
+            return unchanged;
+        }
+        return new Paragraph(start, end, pd);
+    }
+
+    /**
+     * Maps the paragraphs of the last update through the changes of the text buffer
+     * since then, and keeps those that were not affected by any change, at their new
+     * positions and with their content revision
+     * @param textBuffer the text buffer
+     * @return a map with the unchanged paragraphs, by their start position
+     */
+    private Map<Integer, Paragraph> getUnchangedParagraphs(TextBuffer textBuffer) {
+        List<TextBuffer.Event> events = builtParagraphList.isEmpty() ? null :
+                textBuffer.getChangesSince(builtParagraphListRevision).orElse(null);
+        if (events == null) {
+            return Map.of();
+        }
+        int size = builtParagraphList.size();
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        boolean[] changed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            starts[i] = builtParagraphList.get(i).getStart();
+            ends[i] = builtParagraphList.get(i).getEnd();
+        }
+        for (TextBuffer.Event event : events) {
+            int eventStart, eventEnd, delta;
+            if (event instanceof TextBuffer.InsertEvent) {
+                TextBuffer.InsertEvent insertEvent = (TextBuffer.InsertEvent) event;
+                eventStart = insertEvent.getPosition();
+                eventEnd = eventStart;
+                delta = insertEvent.getText().length();
+            } else if (event instanceof TextBuffer.DeleteEvent) {
+                TextBuffer.DeleteEvent deleteEvent = (TextBuffer.DeleteEvent) event;
+                eventStart = deleteEvent.getPosition();
+                eventEnd = eventStart + deleteEvent.getLength();
+                delta = -deleteEvent.getLength();
+            } else if (event instanceof TextBuffer.DecorateEvent) {
+                TextBuffer.DecorateEvent decorateEvent = (TextBuffer.DecorateEvent) event;
+                eventStart = decorateEvent.getStart();
+                eventEnd = decorateEvent.getEnd();
+                delta = 0;
+            } else {
+                return Map.of();
+            }
+            for (int i = 0; i < size; i++) {
+                if (changed[i]) {
+                    continue;
+                }
+                if (starts[i] <= eventEnd && eventStart <= ends[i]) {
+                    // paragraph boundaries are included, as the change could join or split paragraphs
+                    changed[i] = true;
+                } else if (starts[i] > eventEnd) {
+                    starts[i] += delta;
+                    ends[i] += delta;
+                }
+            }
+        }
+        Map<Integer, Paragraph> unchangedParagraphs = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (!changed[i]) {
+                Paragraph paragraph = builtParagraphList.get(i);
+                unchangedParagraphs.put(starts[i], paragraph.getStart() == starts[i] ? paragraph :
+                        new Paragraph(starts[i], ends[i], paragraph.getDecoration(), paragraph.getRevision()));
+            }
+        }
+        return unchangedParagraphs;
     }
 
     public Optional<Paragraph> getParagraphWithCaret() {
         int position = getCaretPosition();
-        return paragraphList.stream()
-                .filter(p -> p.getStart() <= position &&
-                        position < (p.equals(lastParagraph) ? p.getEnd() + 1 : p.getEnd()))
-                .findFirst();
+        int index = getParagraphIndex(paragraphList, position);
+        if (index < 0) {
+            return Optional.empty();
+        }
+        Paragraph p = paragraphList.get(index);
+        return position < (p.equals(lastParagraph) ? p.getEnd() + 1 : p.getEnd()) ?
+                Optional.of(p) : Optional.empty();
     }
 
     private List<Paragraph> getParagraphsWithSelection() {
@@ -620,9 +764,15 @@ public class RichTextAreaViewModel {
         if (!selection.isDefined()) {
             return List.of();
         }
-        return paragraphList.stream()
-                .filter(p -> !(p.getStart() > selection.getEnd() || p.getEnd() <= selection.getStart()))
-                .collect(Collectors.toList());
+        List<Paragraph> paragraphs = new ArrayList<>();
+        for (int i = Math.max(0, getParagraphIndex(paragraphList, selection.getStart()));
+             i < paragraphList.size() && paragraphList.get(i).getStart() <= selection.getEnd(); i++) {
+            Paragraph p = paragraphList.get(i);
+            if (p.getEnd() > selection.getStart()) {
+                paragraphs.add(p);
+            }
+        }
+        return paragraphs;
     }
 
     void undo() {
@@ -674,16 +824,11 @@ public class RichTextAreaViewModel {
         if (textLength <= 0) {
             return 0;
         }
-        if (wordIterator == null) {
-            wordIterator = BreakIterator.getWordInstance();
-        }
-        wordIterator.setText(getTextBuffer().getCharacterIterator());
-
         int prevCaretPosition = getCaretPosition();
-        int position = wordIterator.preceding(Tools.clamp(0, prevCaretPosition, textLength));
-        while (position != BreakIterator.DONE &&
-                !Character.isLetterOrDigit(getTextBuffer().charAt(Tools.clamp(0, position, textLength - 1)))) {
-            position = wordIterator.preceding(Tools.clamp(0, position, textLength));
+        int position = wordBoundaryIndex.preceding(Tools.clamp(0, prevCaretPosition, textLength));
+        while (position != WordBoundaryIndex.DONE &&
+                !Character.isLetterOrDigit(wordBoundaryIndex.charAt(Tools.clamp(0, position, textLength - 1)))) {
+            position = wordBoundaryIndex.preceding(Tools.clamp(0, position, textLength));
         }
         return Tools.clamp(0, position, textLength);
     }
@@ -694,28 +839,48 @@ public class RichTextAreaViewModel {
 
     private void nextWord(Predicate<Character> filter) {
         int textLength = getTextLength();
-        if (wordIterator == null) {
-            wordIterator = BreakIterator.getWordInstance();
+        if (textLength <= 0) {
+            return;
         }
-        wordIterator.setText(getTextBuffer().getCharacterIterator());
-
         int prevCaretPosition = getCaretPosition();
-        int last = wordIterator.following(Tools.clamp(0, prevCaretPosition, textLength - 1));
-        int current = wordIterator.next();
-        while (current != BreakIterator.DONE) {
+        int last = wordBoundaryIndex.following(Tools.clamp(0, prevCaretPosition, textLength - 1));
+        int current = last == WordBoundaryIndex.DONE ? last : wordBoundaryIndex.following(last);
+        while (current != WordBoundaryIndex.DONE) {
             for (int i = last; i <= current; i++) {
-                char c = getTextBuffer().charAt(Tools.clamp(0, i, textLength - 1));
+                char c = wordBoundaryIndex.charAt(Tools.clamp(0, i, textLength - 1));
                 if (filter.test(c)) {
                     setCaretPosition(Tools.clamp(0, i, textLength));
                     return;
                 }
             }
             last = current;
-            current = wordIterator.next();
+            current = wordBoundaryIndex.following(current);
         }
         setCaretPosition(textLength);
     }
 
+    /**
+     * Finds the paragraph that contains a position, by binary search over the paragraph starts
+     * @param paragraphs the sorted list of paragraphs
+     * @param position a position in the text
+     * @return the index of the last paragraph that starts at or before the position, or -1
+     */
+    public static int getParagraphIndex(List<Paragraph> paragraphs, int position) {
+        int low = 0;
+        int high = paragraphs.size() - 1;
+        int index = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (paragraphs.get(mid).getStart() <= position) {
+                index = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index;
+    }
+
     private void lineStart() {
         int pos = getNextRowPosition.apply(0d, null);
         setCaretPosition(pos);
@@ -729,10 +894,11 @@ public class RichTextAreaViewModel {
     private void paragraphStart() {
         int pos = getCaretPosition();
         if (pos > 0) {
-            while (pos > 0 && getTextBuffer().charAt(pos - 1) != 0x0a) {
-                pos--;
-            }
-            setCaretPosition(pos);
+            // last line feed before pos
+            List<Integer> lineFeeds = getTextBuffer().getLineFeeds();
+            int index = Collections.binarySearch(lineFeeds, pos - 1);
+            index = index >= 0 ? index : -index - 2;
+            setCaretPosition(index >= 0 ? lineFeeds.get(index) + 1 : 0);
         }
     }
 
@@ -740,10 +906,11 @@ public class RichTextAreaViewModel {
         int pos = getCaretPosition();
         int len = getTextLength();
         if (pos < len) {
-            while (pos < len && getTextBuffer().charAt(pos) != 0x0a) {
-                pos++;
-            }
-            setCaretPosition(pos);
+            // first line feed at or after pos
+            List<Integer> lineFeeds = getTextBuffer().getLineFeeds();
+            int index = Collections.binarySearch(lineFeeds, pos);
+            index = index >= 0 ? index : -index - 1;
+            setCaretPosition(index < lineFeeds.size() ? Math.min(lineFeeds.get(index), len) : len);
         }
     }
 
@@ -761,6 +928,19 @@ public class RichTextAreaViewModel {
         return new Document(getTextBuffer().getText(start, end), getTextBuffer().getDecorationModelList(start, end), caret);
     }
 
+    private Document getSavedDocument() {
+        flushPendingInput();
+        long revision = getTextBuffer().getRevision();
+        int caretPosition = getCaretPosition() < 0 ? getTextLength() : getCaretPosition();
+        int caret = getTextBuffer().getText(0, caretPosition).length();
+        Document document = getDocument();
+        if (document != null && document.getRevision() == revision) {
+            // unchanged content: the immutable text and decorations are shared
+            return new Document(document.getText(), document.getDecorations(), caret, revision);
+        }
+        return new Document(getTextBuffer().getText(), getTextBuffer().getDecorationModelList(0, getTextLength()), caret, revision);
+    }
+
     void newDocument() {
         //comment out runLater to have the effect of newDocumentNow
  //       Platform.runLater(() -> {
@@ -779,7 +959,7 @@ public class RichTextAreaViewModel {
     }
 
     void save() {
-        Document currentDocument = getCurrentDocument(Selection.UNDEFINED);
+        Document currentDocument = getSavedDocument();
         undoStackSizeWhenSaved = getUndoStackSize();
         savedProperty.set(true);
         setDocument(currentDocument);
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.viewmodel;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.TextBuffer;
+
+import java.text.BreakIterator;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Index of the word boundaries of a text buffer, for word navigation, selection
+ * and deletion. Boundaries are found with a word BreakIterator over the text of
+ * each paragraph, and cached by paragraph revision, so they are only computed
+ * again when the paragraph changes. Words never span paragraphs, as a line feed
+ * is always a word boundary.
+ */
+class WordBoundaryIndex {
+
+    static final int DONE = BreakIterator.DONE;
+    static final int DEFAULT_MAX_PARAGRAPHS = 256;
+
+    private final Supplier<TextBuffer> textBufferSupplier;
+    private final List<Paragraph> paragraphs;
+    private final int maxParagraphs;
+    private final BreakIterator wordIterator = BreakIterator.getWordInstance();
+    private final Map<Long, Entry> entryMap = new LinkedHashMap<>(16, 0.75f, true);
+    // entry of the whole text, used while the paragraphs lag the text buffer, and its buffer revision
+    private Entry textEntry;
+    private long textEntryRevision;
+
+    /**
+     * Creates an index
+     * @param textBufferSupplier supplies the current text buffer
+     * @param paragraphs the sorted list of paragraphs of the text buffer
+     */
+    WordBoundaryIndex(Supplier<TextBuffer> textBufferSupplier, List<Paragraph> paragraphs) {
+        this(textBufferSupplier, paragraphs, DEFAULT_MAX_PARAGRAPHS);
+    }
+
+    WordBoundaryIndex(Supplier<TextBuffer> textBufferSupplier, List<Paragraph> paragraphs, int maxParagraphs) {
+        if (maxParagraphs < 1) {
+            throw new IllegalArgumentException("Max paragraphs " + maxParagraphs + " must be positive");
+        }
+        this.textBufferSupplier = Objects.requireNonNull(textBufferSupplier);
+        this.paragraphs = Objects.requireNonNull(paragraphs);
+        this.maxParagraphs = maxParagraphs;
+    }
+
+    /**
+     * Finds the first word boundary after the given position
+     * @param position a position in the text
+     * @return the boundary, or {@link #DONE} if the position is at the end of the text
+     */
+    int following(int position) {
+        Entry entry = getEntry(position);
+        if (entry == null) {
+            return DONE;
+        }
+        int index = Arrays.binarySearch(entry.boundaries, position - entry.start);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return index < entry.boundaries.length ? entry.start + entry.boundaries[index] : DONE;
+    }
+
+    /**
+     * Finds the last word boundary before the given position
+     * @param position a position in the text
+     * @return the boundary, or {@link #DONE} if the position is at the beginning of the text
+     */
+    int preceding(int position) {
+        if (position <= 0) {
+            return DONE;
+        }
+        // the paragraph of the previous character has a boundary before the position
+        Entry entry = getEntry(position - 1);
+        if (entry == null) {
+            return DONE;
+        }
+        int index = Arrays.binarySearch(entry.boundaries, position - entry.start);
+        index = index >= 0 ? index - 1 : -index - 2;
+        return index >= 0 ? entry.start + entry.boundaries[index] : DONE;
+    }
+
+    /**
+     * Gets the character at the given position, from the cached paragraph text
+     * @param position a position in the text
+     * @return the character, or 0 if the position is not valid
+     */
+    char charAt(int position) {
+        Entry entry = getEntry(position);
+        if (entry == null || position - entry.start >= entry.text.length()) {
+            return 0;
+        }
+        return entry.text.charAt(position - entry.start);
+    }
+
+    void clear() {
+        entryMap.clear();
+        textEntry = null;
+    }
+
+    int size() {
+        return entryMap.size();
+    }
+
+    private Entry getEntry(int position) {
+        TextBuffer textBuffer = textBufferSupplier.get();
+        int textLength = textBuffer == null ? 0 : textBuffer.getTextLength();
+        if (position < 0 || position > textLength || textLength == 0) {
+            return null;
+        }
+        int index = RichTextAreaViewModel.getParagraphIndex(paragraphs, position);
+        if (index < 0 || paragraphs.get(paragraphs.size() - 1).getEnd() != textLength) {
+            // paragraphs are not up to date, use the whole text, once per revision
+            if (textEntry == null || textEntryRevision != textBuffer.getRevision()) {
+                textEntry = createEntry(textBuffer, 0, textLength);
+                textEntryRevision = textBuffer.getRevision();
+            }
+            return textEntry;
+        }
+        Paragraph paragraph = paragraphs.get(index);
+        Entry entry = entryMap.get(paragraph.getRevision());
+        if (entry == null || entry.start != paragraph.getStart()) {
+            // a paragraph that shifted keeps its revision and its text
+            entry = entry == null ?
+                    createEntry(textBuffer, paragraph.getStart(), paragraph.getEnd()) :
+                    new Entry(paragraph.getStart(), entry.text, entry.boundaries);
+            entryMap.put(paragraph.getRevision(), entry);
+            if (entryMap.size() > maxParagraphs) {
+                entryMap.remove(entryMap.keySet().iterator().next());
+            }
+        }
+        return entry;
+    }
+
+    private Entry createEntry(TextBuffer textBuffer, int start, int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = textBuffer.charAt(i);
+            // table cells are separated like words
+            sb.append(c == TextBuffer.ZERO_WIDTH_TABLE_SEPARATOR ? ' ' : c);
+        }
+        String text = sb.toString();
+        wordIterator.setText(text);
+        int[] boundaries = new int[text.length() + 1];
+        int count = 0;
+        for (int b = wordIterator.first(); b != BreakIterator.DONE; b = wordIterator.next()) {
+            boundaries[count++] = b;
+        }
+        return new Entry(start, text, Arrays.copyOf(boundaries, count));
+    }
+
+    private static final class Entry {
+        private final int start;
+        private final String text;
+        // boundaries relative to start, including 0 and the text length
+        private final int[] boundaries;
+
+        Entry(int start, String text, int[] boundaries) {
+            this.start = start;
+            this.text = text;
+            this.boundaries = boundaries;
+        }
+    }
+}
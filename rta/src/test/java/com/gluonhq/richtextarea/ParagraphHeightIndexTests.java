@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.gluonhq.richtextarea.ParagraphHeightIndex.PARAGRAPH_SPACING;
+
+public class ParagraphHeightIndexTests {
+
+    private static final ParagraphDecoration DECORATION = ParagraphDecoration.builder().presets().build();
+
+    @Test
+    @DisplayName("Height: unrendered paragraphs use estimates")
+    public void estimatedHeights() {
+        ParagraphHeightIndex index = new ParagraphHeightIndex(p -> p.getEnd() - p.getStart());
+        index.setParagraphs(List.of(new Paragraph(0, 10, DECORATION), new Paragraph(10, 30, DECORATION)));
+        Assertions.assertEquals(30 + 2 * PARAGRAPH_SPACING, index.getTotalHeight(), 1e-9);
+        Assertions.assertEquals(10 + PARAGRAPH_SPACING, index.getOffset(1), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Height: measured heights replace estimates")
+    public void measuredHeights() {
+        ParagraphHeightIndex index = new ParagraphHeightIndex(p -> 10);
+        Paragraph p0 = new Paragraph(0, 5, DECORATION);
+        Paragraph p1 = new Paragraph(5, 10, DECORATION);
+        Paragraph p2 = new Paragraph(10, 15, DECORATION);
+        index.setParagraphs(List.of(p0, p1, p2));
+        index.setMeasuredHeight(p1, 25);
+        Assertions.assertEquals(45 + 3 * PARAGRAPH_SPACING, index.getTotalHeight(), 1e-9);
+        Assertions.assertEquals(35 + 2 * PARAGRAPH_SPACING, index.getOffset(2), 1e-9);
+
+        // the paragraph keeps its measured height while its content revision doesn't change
+        Paragraph shifted = new Paragraph(6, 11, DECORATION, p1.getRevision());
+        index.setParagraphs(List.of(new Paragraph(0, 6, DECORATION), shifted, new Paragraph(11, 16, DECORATION)));
+        Assertions.assertEquals(25 + PARAGRAPH_SPACING, index.getHeight(1), 1e-9);
+
+        index.invalidate();
+        Assertions.assertEquals(30 + 3 * PARAGRAPH_SPACING, index.getTotalHeight(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("Height: offsets match the sum of heights")
+    public void offsets() {
+        ParagraphHeightIndex index = new ParagraphHeightIndex(p -> p.getStart());
+        List<Paragraph> paragraphs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            paragraphs.add(new Paragraph(i, i + 1, DECORATION));
+        }
+        index.setParagraphs(paragraphs);
+        index.setMeasuredHeight(paragraphs.get(50), 1000);
+        double sum = 0;
+        for (int i = 0; i < 100; i++) {
+            Assertions.assertEquals(sum, index.getOffset(i), 1e-9);
+            sum += index.getHeight(i);
+        }
+        Assertions.assertEquals(sum, index.getTotalHeight(), 1e-9);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class ParagraphWidthIndexTests {
+
+    private static final ParagraphDecoration DECORATION = ParagraphDecoration.builder().presets().build();
+
+    @Test
+    @DisplayName("Width: maximum is kept over all paragraphs")
+    public void maxWidth() {
+        ParagraphWidthIndex index = new ParagraphWidthIndex();
+        Paragraph p0 = new Paragraph(0, 5, DECORATION);
+        Paragraph p1 = new Paragraph(5, 10, DECORATION);
+        index.setParagraphs(List.of(p0, p1));
+        Assertions.assertTrue(index.setWidth(p0, 100));
+        Assertions.assertFalse(index.setWidth(p1, 50));
+        Assertions.assertEquals(100, index.getMaxWidth());
+        Assertions.assertTrue(index.hasWidth(p1));
+
+        // the widest paragraph is edited
+        Paragraph p2 = new Paragraph(0, 3, DECORATION);
+        Assertions.assertTrue(index.setParagraphs(List.of(p2, new Paragraph(3, 8, DECORATION, p1.getRevision()))));
+        Assertions.assertEquals(50, index.getMaxWidth());
+        Assertions.assertFalse(index.hasWidth(p2));
+    }
+
+    @Test
+    @DisplayName("Width: paragraphs with the same width")
+    public void sameWidths() {
+        ParagraphWidthIndex index = new ParagraphWidthIndex();
+        Paragraph p0 = new Paragraph(0, 5, DECORATION);
+        Paragraph p1 = new Paragraph(5, 10, DECORATION);
+        index.setParagraphs(List.of(p0, p1));
+        index.setWidth(p0, 80);
+        index.setWidth(p1, 80);
+        Assertions.assertFalse(index.setParagraphs(List.of(p1)));
+        Assertions.assertEquals(80, index.getMaxWidth());
+        Assertions.assertTrue(index.setWidth(p1, 20));
+        Assertions.assertEquals(20, index.getMaxWidth());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import com.gluonhq.richtextarea.model.PieceTable;
+import com.gluonhq.richtextarea.model.SearchQuery;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SearchMatchCacheTests {
+
+    private static final ParagraphDecoration DECORATION = ParagraphDecoration.builder().presets().build();
+
+    @Test
+    @DisplayName("Search: matches are found per paragraph and kept by revision")
+    public void matchesByRevision() {
+        PieceTable pt = new PieceTable(new Document("ab AB\nab\n"));
+        Paragraph p0 = new Paragraph(0, 6, DECORATION);
+        Paragraph p1 = new Paragraph(6, 9, DECORATION);
+        SearchMatchCache cache = new SearchMatchCache();
+        Assertions.assertEquals(0, cache.getMatches(p0, pt).length);
+
+        Assertions.assertTrue(cache.setQuery(new SearchQuery("ab", SearchQuery.Mode.IGNORE_CASE)));
+        Assertions.assertArrayEquals(new int[] {0, 2, 3, 5}, cache.getMatches(p0, pt));
+        Assertions.assertArrayEquals(new int[] {0, 2}, cache.getMatches(p1, pt));
+        Assertions.assertEquals(2, cache.size());
+
+        // a paragraph that moved keeps its matches, relative to its start
+        pt.insert("x", 0);
+        Paragraph shifted = new Paragraph(7, 10, DECORATION, p1.getRevision());
+        Assertions.assertArrayEquals(new int[] {0, 2}, cache.getMatches(shifted, pt));
+        Assertions.assertEquals(2, cache.size());
+
+        Assertions.assertFalse(cache.setQuery(new SearchQuery("ab", SearchQuery.Mode.IGNORE_CASE)));
+        Assertions.assertTrue(cache.setQuery(new SearchQuery("ab", SearchQuery.Mode.LITERAL)));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertArrayEquals(new int[] {1, 3}, cache.getMatches(new Paragraph(0, 7, DECORATION), pt));
+    }
+}
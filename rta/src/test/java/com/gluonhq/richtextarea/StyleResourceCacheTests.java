@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StyleResourceCacheTests {
+
+    @Test
+    @DisplayName("Style: colors are parsed once and shared")
+    public void colorsAreShared() {
+        StyleResourceCache cache = new StyleResourceCache(10);
+        Color red = cache.getColor("#ff0000", Color.BLACK);
+        Assertions.assertEquals(Color.RED, red);
+        Assertions.assertSame(red, cache.getColor("#ff0000", Color.BLACK));
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    @DisplayName("Style: invalid colors return the default color")
+    public void invalidColor() {
+        StyleResourceCache cache = new StyleResourceCache(10);
+        Assertions.assertEquals(Color.BLACK, cache.getColor("not a color", Color.BLACK));
+        Assertions.assertEquals(Color.TRANSPARENT, cache.getColor("not a color", Color.TRANSPARENT));
+        Assertions.assertEquals(Color.TRANSPARENT, cache.getColor(null, Color.TRANSPARENT));
+        Assertions.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    @DisplayName("Style: least recently used entries are evicted")
+    public void leastRecentlyUsedEviction() {
+        StyleResourceCache cache = new StyleResourceCache(2);
+        cache.getColor("red", Color.BLACK);
+        cache.getColor("green", Color.BLACK);
+        cache.getColor("red", Color.BLACK);
+        cache.getColor("blue", Color.BLACK);
+        Assertions.assertEquals(2, cache.size());
+        cache.getColor("red", Color.BLACK);
+        Assertions.assertEquals(2, cache.getHitCount());
+        cache.getColor("green", Color.BLACK);
+        Assertions.assertEquals(4, cache.getMissCount());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+public class TileRangeIndexTests {
+
+    @Test
+    @DisplayName("Range index: items intersecting a range")
+    public void intersectingItems() {
+        TileRangeIndex<String> index = new TileRangeIndex<>();
+        index.put("a", 0, 10);
+        index.put("b", 11, 20);
+        index.put("c", 21, 30);
+        Assertions.assertEquals(Set.of("a"), index.getItems(5, 5));
+        Assertions.assertEquals(Set.of("a", "b"), index.getItems(10, 11));
+        Assertions.assertEquals(List.of("b", "c"), List.copyOf(index.getItems(15, 40)));
+        Assertions.assertTrue(index.getItems(31, 40).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Range index: items are moved and removed")
+    public void movedItems() {
+        TileRangeIndex<String> index = new TileRangeIndex<>();
+        index.put("a", 0, 10);
+        index.put("b", 11, 20);
+        index.put("a", 21, 30);
+        Assertions.assertTrue(index.getItems(0, 10).isEmpty());
+        Assertions.assertEquals(Set.of("a"), index.getItems(25, 25));
+
+        // c shares the start of b
+        index.put("c", 11, 15);
+        Assertions.assertEquals(Set.of("b", "c"), index.getItems(12, 12));
+        index.remove("b");
+        Assertions.assertEquals(Set.of("c"), index.getItems(12, 12));
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> index.put("d", 5, 4));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.model;
+
+import javafx.scene.text.TextAlignment;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class DocumentJournalTests {
+
+    private static final Document FACE_MODEL = new Document("One 😀 Text\nSecond line");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("Recovered document replays inserts, deletes, decorations and undo")
+    public void recoverReplaysJournal() throws IOException {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        DocumentJournal journal = new DocumentJournal(tempDir.resolve("doc.journal"));
+        journal.attach(pt);
+        pt.insert("Big 😃 ", 6);
+        pt.decorate(0, 3, TextDecoration.builder().fontSize(20).build());
+        pt.decorate(12, 14, TextDecoration.builder().foreground("red").build());
+        pt.delete(2, 2);
+        pt.undo();
+        pt.decorate(0, pt.getTextLength(), ParagraphDecoration.builder().alignment(TextAlignment.CENTER).build());
+        pt.undo();
+        pt.append(" end");
+        journal.flush();
+
+        Document recovered = new DocumentJournal(tempDir.resolve("doc.journal")).recover().orElseThrow();
+        Assertions.assertEquals(pt.getText(), recovered.getText());
+        Assertions.assertEquals(pt.getDecorationModelList(0, pt.getTextLength()), recovered.getDecorations());
+    }
+
+    @Test
+    @DisplayName("Periodic checkpoints truncate the journal")
+    public void periodicCheckpoint() throws IOException {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        DocumentJournal journal = new DocumentJournal(tempDir.resolve("doc.journal"), 2);
+        journal.attach(pt);
+        pt.append(" one");
+        pt.append(" two");
+        journal.flush();
+        long size = Files.size(journal.getJournalPath());
+        pt.append(" three");
+        journal.flush();
+        Assertions.assertTrue(Files.size(journal.getJournalPath()) > size);
+        pt.append(" four");
+        journal.flush();
+        Assertions.assertEquals(size, Files.size(journal.getJournalPath()));
+        Assertions.assertEquals(pt.getText(), journal.recover().orElseThrow().getText());
+    }
+
+    @Test
+    @DisplayName("Truncated entry at the end of the journal is ignored")
+    public void truncatedEntryIgnored() throws IOException {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        DocumentJournal journal = new DocumentJournal(tempDir.resolve("doc.journal"));
+        journal.attach(pt);
+        pt.append(" more");
+        String text = pt.getText();
+        journal.detach();
+        Files.write(journal.getJournalPath(), new byte[] {0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+        Assertions.assertEquals(text, journal.recover().orElseThrow().getText());
+    }
+}
@@ -27,6 +27,7 @@
  */
 package com.gluonhq.richtextarea.model;
 
+import com.gluonhq.richtextarea.Selection;
 import javafx.scene.paint.Color;
 import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
@@ -34,6 +35,11 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 public class PieceTableTests {
@@ -519,4 +525,175 @@ public class PieceTableTests {
                 .anyMatch(piece -> ((TextDecoration) piece.getDecoration()).getFontSize() == defaultFontSize));
     }
 
+    @Test
+    @DisplayName("Original text from a character sequence is referenced, not copied")
+    public void originalTextFromCharSequence() {
+        CharBuffer buffer = CharBuffer.wrap("Line one\nLine two\n".toCharArray());
+        PieceTable pt = new PieceTable(new Document(buffer, List.of(DecorationModel.createDefaultDecorationModel(buffer.length())), 0));
+        Assertions.assertTrue(((TextUnit) pt.originalText.getUnitList().get(0)).getCharSequence() instanceof CharBuffer);
+        Assertions.assertEquals(List.of(8, 17), pt.getLineFeeds());
+        pt.insert("and ", 5);
+        Assertions.assertEquals("Line and one\nLine two\n", pt.getText());
+        Assertions.assertEquals("one\nLine", pt.getText(9, 17));
+        pt.resetCharacterIterator();
+        Assertions.assertEquals('t', pt.charAt(18));
+    }
+
+    @Test
+    @DisplayName("Changes since a revision")
+    public void changesSinceRevision() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        long revision = pt.getRevision();
+        Assertions.assertEquals(List.of(), pt.getChangesSince(revision).orElseThrow());
+        pt.insert("Big ", 9);
+        long insertRevision = pt.getRevision();
+        Assertions.assertTrue(insertRevision > revision);
+        pt.delete(0, 2);
+        List<TextBuffer.Event> changes = pt.getChangesSince(revision).orElseThrow();
+        Assertions.assertEquals(2, changes.size());
+        Assertions.assertTrue(changes.get(0) instanceof TextBuffer.InsertEvent);
+        Assertions.assertTrue(changes.get(1) instanceof TextBuffer.DeleteEvent);
+        Assertions.assertEquals(1, pt.getChangesSince(insertRevision).orElseThrow().size());
+        Assertions.assertTrue(pt.getChangesSince(new PieceTable(FACE_MODEL).getRevision()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Truncated change log requires a rebuild")
+    public void truncatedChangeLog() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        long revision = pt.getRevision();
+        for (int i = 0; i < 1100; i++) {
+            pt.append("a");
+        }
+        Assertions.assertTrue(pt.getChangesSince(revision).isEmpty());
+        long lastRevision = pt.getRevision();
+        pt.append("b");
+        Assertions.assertEquals(1, pt.getChangesSince(lastRevision).orElseThrow().size());
+    }
+
+    @Test
+    @DisplayName("Char sequence is a snapshot of the text")
+    public void charSequence() {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("Big ", 9);
+        pt.append("!");
+        CharSequence sequence = pt.getCharSequence();
+        Assertions.assertEquals("Original Big Text!", sequence.toString());
+        Assertions.assertEquals(18, sequence.length());
+        Assertions.assertEquals('B', sequence.charAt(9));
+        Assertions.assertEquals('T', sequence.charAt(13));
+        CharSequence subSequence = sequence.subSequence(6, 15);
+        Assertions.assertEquals("al Big Te", subSequence.toString());
+        Assertions.assertEquals('i', subSequence.charAt(4));
+        Assertions.assertEquals("Big", subSequence.subSequence(3, 6).toString());
+
+        pt.delete(0, 9);
+        Assertions.assertEquals("Original Big Text!", sequence.toString());
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> sequence.charAt(18));
+    }
+
+    @Test
+    @DisplayName("Search query finds matches from a position")
+    public void searchQueryFind() {
+        PieceTable pt = new PieceTable(new Document("One two one TWO"));
+        pt.insert("two ", 4);
+        CharSequence text = pt.getCharSequence();
+        SearchQuery literal = new SearchQuery("two", SearchQuery.Mode.LITERAL);
+        Assertions.assertEquals(List.of(new Selection(4, 7), new Selection(8, 11)), literal.findAll(text, 0, text.length()));
+        Assertions.assertEquals(new Selection(8, 11), literal.find(text, 5, false).orElseThrow());
+        Assertions.assertTrue(literal.find(text, 9, false).isEmpty());
+        Assertions.assertEquals(new Selection(4, 7), literal.find(text, 9, true).orElseThrow());
+
+        SearchQuery ignoreCase = new SearchQuery("two", SearchQuery.Mode.IGNORE_CASE);
+        Assertions.assertEquals(new Selection(16, 19), ignoreCase.find(text, 9, false).orElseThrow());
+        SearchQuery regex = new SearchQuery("o\\w*", SearchQuery.Mode.REGEX);
+        Assertions.assertEquals(3, regex.findAll(text, 0, 15).size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SearchQuery("(", SearchQuery.Mode.REGEX));
+    }
+
+    @Test
+    @DisplayName("Replace all matches, undo and redo in one step")
+    public void replaceAll() {
+        PieceTable pt = new PieceTable(new Document("One two one TWO"));
+        pt.insert("two ", 4);
+        pt.decorate(16, 19, TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build());
+        List<TextBuffer.Event> events = new ArrayList<>();
+        pt.addChangeListener(events::add);
+
+        pt.replaceAll(new SearchQuery("two", SearchQuery.Mode.IGNORE_CASE), "three");
+        Assertions.assertEquals("One three three one three", pt.getText());
+        Assertions.assertEquals(pt.getText().length(), pt.getTextLength());
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals(FontWeight.BOLD, ((TextDecoration) pt.getDecorationAtCaret(22)).getFontWeight());
+
+        pt.undo();
+        Assertions.assertEquals("One two two one TWO", pt.getText());
+        Assertions.assertEquals(19, pt.getTextLength());
+        pt.redo();
+        Assertions.assertEquals("One three three one three", pt.getText());
+
+        pt.replaceAll(new SearchQuery("(\\w)(\\w*)e\\b", SearchQuery.Mode.REGEX), "$2$1");
+        Assertions.assertEquals("nO hret hret no hret", pt.getText());
+        pt.undo();
+        Assertions.assertEquals("One three three one three", pt.getText());
+    }
+
+    @Test
+    @DisplayName("Replace all events match the text when they are fired")
+    public void replaceAllEvents() {
+        PieceTable pt = new PieceTable(new Document("\nba\nbbaa\nb\n\n\n\n\nb"));
+        StringBuilder text = new StringBuilder(pt.getText());
+        pt.addChangeListener(e -> {
+            if (e instanceof TextBuffer.DeleteEvent) {
+                TextBuffer.DeleteEvent de = (TextBuffer.DeleteEvent) e;
+                text.delete(de.getPosition(), de.getPosition() + de.getLength());
+            } else if (e instanceof TextBuffer.InsertEvent) {
+                TextBuffer.InsertEvent ie = (TextBuffer.InsertEvent) e;
+                text.insert(ie.getPosition(), ie.getText());
+            }
+            pt.resetCharacterIterator();
+            Assertions.assertEquals(text.toString(), pt.getCharSequence().toString());
+            Assertions.assertEquals(text.length(), pt.getTextLength());
+        });
+
+        pt.replaceAll(new SearchQuery("a", SearchQuery.Mode.LITERAL), "");
+        Assertions.assertEquals("\nb\nbb\nb\n\n\n\n\nb", pt.getText());
+        pt.undo();
+        Assertions.assertEquals("\nba\nbbaa\nb\n\n\n\n\nb", pt.getText());
+        pt.replaceAll(new SearchQuery("b", SearchQuery.Mode.LITERAL), "cd");
+        Assertions.assertEquals("\ncda\ncdcdaa\ncd\n\n\n\n\ncd", pt.getText());
+    }
+
+    @Test
+    @DisplayName("Snapshot keeps the text and decorations of its revision")
+    public void snapshot() throws Exception {
+        PieceTable pt = new PieceTable(FACE_MODEL);
+        pt.insert("Big ", 9);
+        pt.decorate(9, 12, TextDecoration.builder().presets().fontWeight(FontWeight.BOLD).build());
+        TextSnapshot snapshot = pt.getSnapshot();
+        Document expected = new Document(pt.getText(), pt.getDecorationModelList(0, pt.getTextLength()), 13);
+        pt.delete(0, 9);
+        pt.append("!");
+
+        Assertions.assertTrue(snapshot.getRevision() < pt.getRevision());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Document document = executor.submit(() -> snapshot.getDocument(13)).get();
+            Assertions.assertEquals("Original Big Text", document.getText());
+            Assertions.assertEquals(expected.getDecorations().size(), document.getDecorations().size());
+            for (int i = 0; i < expected.getDecorations().size(); i++) {
+                DecorationModel dm = document.getDecorations().get(i);
+                Assertions.assertEquals(expected.getDecorations().get(i).getStart(), dm.getStart());
+                Assertions.assertEquals(expected.getDecorations().get(i).getLength(), dm.getLength());
+                Assertions.assertEquals(expected.getDecorations().get(i).getDecoration(), dm.getDecoration());
+            }
+            Assertions.assertEquals(13, document.getCaretPosition());
+            Assertions.assertEquals(snapshot.getRevision(), document.getRevision());
+            Assertions.assertEquals("Big", executor.submit(() -> snapshot.getCharSequence().subSequence(9, 12).toString()).get());
+        } finally {
+            executor.shutdown();
+        }
+        Assertions.assertEquals("Big Text!", pt.getText());
+    }
+
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2022, 2023, Gluon
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL GLUON BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.gluonhq.richtextarea.viewmodel;
+
+import com.gluonhq.richtextarea.model.Document;
+import com.gluonhq.richtextarea.model.Paragraph;
+import com.gluonhq.richtextarea.model.ParagraphDecoration;
+import com.gluonhq.richtextarea.model.PieceTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WordBoundaryIndexTests {
+
+    private static final ParagraphDecoration DECORATION = ParagraphDecoration.builder().presets().build();
+
+    @Test
+    @DisplayName("Word boundaries: following and preceding across paragraphs")
+    public void boundaries() {
+        // "One two\n" [0, 8), "three" [8, 13)
+        PieceTable pt = new PieceTable(new Document("One two\nthree"));
+        List<Paragraph> paragraphs = List.of(new Paragraph(0, 8, DECORATION), new Paragraph(8, 13, DECORATION));
+        WordBoundaryIndex index = new WordBoundaryIndex(() -> pt, paragraphs);
+        Assertions.assertEquals(3, index.following(0));
+        Assertions.assertEquals(4, index.following(3));
+        Assertions.assertEquals(7, index.following(5));
+        Assertions.assertEquals(13, index.following(9));
+        Assertions.assertEquals(WordBoundaryIndex.DONE, index.following(13));
+
+        Assertions.assertEquals(8, index.preceding(13));
+        Assertions.assertEquals(7, index.preceding(8));
+        Assertions.assertEquals(0, index.preceding(2));
+        Assertions.assertEquals(WordBoundaryIndex.DONE, index.preceding(0));
+        Assertions.assertEquals('t', index.charAt(8));
+        Assertions.assertEquals(2, index.size());
+    }
+
+    @Test
+    @DisplayName("Word boundaries: a changed paragraph is indexed again")
+    public void changedParagraph() {
+        PieceTable pt = new PieceTable(new Document("One two\nthree"));
+        List<Paragraph> paragraphs = new ArrayList<>(List.of(new Paragraph(0, 8, DECORATION), new Paragraph(8, 13, DECORATION)));
+        WordBoundaryIndex index = new WordBoundaryIndex(() -> pt, paragraphs);
+        Assertions.assertEquals(13, index.following(9));
+
+        pt.insert("big ", 8);
+        pt.resetCharacterIterator();
+        paragraphs.set(1, new Paragraph(8, 17, DECORATION));
+        Assertions.assertEquals(11, index.following(9));
+        Assertions.assertEquals(12, index.preceding(17));
+    }
+
+    @Test
+    @DisplayName("Word boundaries: the whole text is used while paragraphs lag the text")
+    public void laggingParagraphs() {
+        PieceTable pt = new PieceTable(new Document("One two\nthree"));
+        WordBoundaryIndex index = new WordBoundaryIndex(() -> pt, List.of());
+        Assertions.assertEquals(3, index.following(0));
+        Assertions.assertEquals(13, index.following(9));
+        Assertions.assertEquals('t', index.charAt(8));
+
+        pt.insert("big ", 8);
+        pt.resetCharacterIterator();
+        Assertions.assertEquals(11, index.following(9));
+        Assertions.assertEquals('b', index.charAt(8));
+        Assertions.assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("Word boundaries: table cells are separated like words")
+    public void tableCells() {
+        PieceTable pt = new PieceTable(new Document("ab\u200bcd"));
+        List<Paragraph> paragraphs = List.of(new Paragraph(0, 5, DECORATION));
+        WordBoundaryIndex index = new WordBoundaryIndex(() -> pt, paragraphs);
+        Assertions.assertEquals(2, index.following(0));
+        Assertions.assertEquals(3, index.following(2));
+        Assertions.assertEquals(5, index.following(3));
+        Assertions.assertEquals(3, index.preceding(5));
+        Assertions.assertEquals(' ', index.charAt(2));
+    }
+}